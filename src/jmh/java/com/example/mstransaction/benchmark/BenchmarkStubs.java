@@ -0,0 +1,268 @@
+package com.example.mstransaction.benchmark;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.dto.CommissionSummaryDTO;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Customer;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.MovementCounter;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.services.AcquisitionService;
+import com.example.mstransaction.services.BillService;
+import com.example.mstransaction.services.DailyBalanceService;
+import com.example.mstransaction.services.ITransactionService;
+import com.example.mstransaction.services.MovementCounterService;
+import com.example.mstransaction.utils.TransactionCursor;
+import com.example.mstransaction.utils.TransactionOrder;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory replacements of the services the handler talks to, so the benchmarks measure the reactive
+ * pipelines and not Mongo or the network. Every lookup returns a fresh graph, as the real services do.
+ */
+final class BenchmarkStubs {
+    static final String ACCOUNT_NUMBER = "1234567890";
+    static final int DAYS_WITH_BALANCE = 30;
+
+    private BenchmarkStubs() {
+    }
+
+    static Transaction transaction() {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionType("DEPOSIT");
+        transaction.setTransactionAmount(Money.ofMinor(15_000));
+        transaction.setDescription("benchmark movement");
+        transaction.setBill(Bill.builder().accountNumber(ACCOUNT_NUMBER).balance(Money.ofMinor(150_000)).build());
+        return transaction;
+    }
+
+    /**
+     * Fully populated {@code Transaction -> Bill -> Acquisition -> Product -> Rules} graph, as stored.
+     */
+    static Transaction storedTransaction(String id) {
+        Transaction transaction = transaction();
+        transaction.setId(id);
+        transaction.setCommission(Money.ofMinor(250));
+        transaction.getBill().setId("60f1c7e2a4b5c6d7e8f90123");
+        transaction.getBill().setAcquisition(acquisition());
+        return transaction;
+    }
+
+    static Acquisition acquisition() {
+        Rules rules = new Rules();
+        rules.setCustomerType("PERSONAL");
+        rules.setCommissionMaintenance(false);
+        rules.setMaximumLimitMonthlyMovements(true);
+        rules.setMaximumLimitMonthlyMovementsQuantity(5);
+        Product product = new Product();
+        product.setProductName("AHORRO");
+        product.setProductType("PASIVO");
+        product.setRules(rules);
+        Acquisition acquisition = new Acquisition();
+        acquisition.setProduct(product);
+        acquisition.setCustomerHolder(customers("71234567", "71234568"));
+        acquisition.setCustomerAuthorizedSigner(customers("71234569"));
+        acquisition.setIban("PE12345678901234567890");
+        return acquisition;
+    }
+
+    private static List<Customer> customers(String... identityNumbers) {
+        List<Customer> customers = new ArrayList<>(identityNumbers.length);
+        for (String identityNumber : identityNumbers) {
+            Customer customer = new Customer();
+            customer.setCustomerIdentityNumber(identityNumber);
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    private static Flux<DailyBalanceDTO> dailyBalances(YearMonth yearMonth) {
+        return Flux.range(1, DAYS_WITH_BALANCE)
+                .map(day -> {
+                    DailyBalanceDTO dailyBalance = new DailyBalanceDTO();
+                    dailyBalance.setDay(yearMonth.atDay(day).toString());
+                    dailyBalance.setBalance(Money.ofMinor(100_000 + day * 100L));
+                    return dailyBalance;
+                });
+    }
+
+    static final class InMemoryTransactionService implements ITransactionService {
+        private final ConcurrentMap<String, Transaction> transactions = new ConcurrentHashMap<>();
+        private final AtomicLong sequence = new AtomicLong();
+        private final List<Transaction> accountPage;
+
+        InMemoryTransactionService(int pageSize) {
+            List<Transaction> page = new ArrayList<>(pageSize);
+            for (int i = 0; i < pageSize; i++) {
+                page.add(storedTransaction(String.valueOf(i)));
+            }
+            this.accountPage = Collections.unmodifiableList(page);
+        }
+
+        @Override
+        public Mono<Transaction> create(Transaction o) {
+            return Mono.fromSupplier(() -> {
+                o.setId(String.valueOf(sequence.incrementAndGet()));
+                // keep the map bounded, only the write itself matters
+                transactions.put(String.valueOf(sequence.get() % 1024), o);
+                return o;
+            });
+        }
+
+        @Override
+        public Flux<Transaction> findAll() {
+            return Flux.fromIterable(transactions.values());
+        }
+
+        @Override
+        public Mono<Transaction> findById(String id) {
+            return Mono.justOrEmpty(transactions.get(id));
+        }
+
+        @Override
+        public Mono<Transaction> update(Transaction o) {
+            return create(o);
+        }
+
+        @Override
+        public Mono<Void> delete(String id) {
+            return Mono.fromRunnable(() -> transactions.remove(id));
+        }
+
+        @Override
+        public Flux<Transaction> findAllByBill_AccountNumber(String accountNumber, TransactionCursor after, int limit, Sort.Direction direction) {
+            return Flux.fromIterable(accountPage).take(limit);
+        }
+
+        @Override
+        public Flux<Transaction> findByTransactionDateBetween(LocalDateTime from, LocalDateTime to) {
+            return Flux.fromIterable(accountPage);
+        }
+
+        @Override
+        public Flux<Transaction> findByBill_Acquisition_Product_ProductName(String productName) {
+            return Flux.fromIterable(accountPage);
+        }
+
+        @Override
+        public Flux<DailyBalanceDTO> findDailyLastBalance(String accountNumber, LocalDateTime from, LocalDateTime to, ZoneId zoneId) {
+            return dailyBalances(YearMonth.from(from));
+        }
+
+        @Override
+        public Flux<Transaction> findByProductNameInRange(String productName, LocalDateTime from, LocalDateTime to) {
+            return Flux.fromIterable(accountPage);
+        }
+
+        @Override
+        public Flux<CommissionSummaryDTO> summarizeCommissionByProduct(String productName, LocalDateTime from, LocalDateTime to, ZoneId zoneId) {
+            return Flux.empty();
+        }
+
+        @Override
+        public Flux<Transaction> findTop(LocalDateTime from, LocalDateTime to, String accountNumber, String productName, TransactionOrder order, int limit) {
+            return Flux.fromIterable(accountPage).take(limit);
+        }
+    }
+
+    static final class StubBillService extends BillService {
+        StubBillService() {
+            super(null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public Mono<Bill> findByAccountNumber(String accountNumber) {
+            return Mono.fromSupplier(() -> Bill.builder()
+                    .id("60f1c7e2a4b5c6d7e8f90123")
+                    .accountNumber(accountNumber)
+                    .balance(Money.ofMinor(150_000))
+                    .acquisition(acquisition())
+                    .build());
+        }
+
+        @Override
+        public Mono<Bill> findLatestByAccountNumber(String accountNumber) {
+            return findByAccountNumber(accountNumber);
+        }
+
+        @Override
+        public Mono<Bill> updateBill(Bill bill) {
+            return Mono.just(bill);
+        }
+    }
+
+    static final class StubAcquisitionService extends AcquisitionService {
+        StubAcquisitionService() {
+            super(null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public Mono<Acquisition> findByBillAccountNumber(String accountNumber) {
+            return Mono.fromSupplier(BenchmarkStubs::acquisition);
+        }
+
+        @Override
+        public Mono<Acquisition> updateAcquisition(Acquisition acquisition) {
+            return Mono.just(acquisition);
+        }
+    }
+
+    static final class StubMovementCounterService extends MovementCounterService {
+        private final AtomicLong count = new AtomicLong();
+
+        StubMovementCounterService(TransactionProperties properties) {
+            super(null, null, properties, null);
+        }
+
+        @Override
+        public Mono<MovementCounter> increment(String accountNumber, int movements, Acquisition acquisition) {
+            return Mono.fromSupplier(() -> {
+                MovementCounter counter = new MovementCounter();
+                counter.setId(accountNumber);
+                counter.setCount(count.addAndGet(movements));
+                return counter;
+            });
+        }
+
+        @Override
+        public Mono<Void> release(MovementCounter counter, int movements) {
+            return Mono.fromRunnable(() -> count.addAndGet(-movements));
+        }
+
+        @Override
+        public void syncToAcquisition(String accountNumber, Acquisition acquisition) {
+        }
+    }
+
+    static final class StubDailyBalanceService extends DailyBalanceService {
+        StubDailyBalanceService(TransactionProperties properties) {
+            super(null, null, null, properties);
+        }
+
+        @Override
+        public Mono<Void> record(Transaction transaction) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Flux<DailyBalanceDTO> findDailyBalances(String accountNumber, YearMonth yearMonth, ZoneId zoneId) {
+            return dailyBalances(yearMonth);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.mstransaction.benchmark;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.handler.TransactionHandler;
+import com.example.mstransaction.utils.AccountSequencer;
+import com.example.mstransaction.utils.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.example.mstransaction.benchmark.BenchmarkStubs.ACCOUNT_NUMBER;
+
+/**
+ * Handler pipelines against in-memory services. The response is built but not written, the body
+ * encoding is measured by {@link TransactionSerializationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionHandlerBenchmark {
+    private TransactionHandler handler;
+    private ServerRequest averageRequest;
+
+    @Setup
+    public void setUp() {
+        TransactionProperties properties = new TransactionProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        handler = new TransactionHandler(
+                new BenchmarkStubs.InMemoryTransactionService(properties.getPage().getMaxLimit() + 1),
+                new BenchmarkStubs.StubBillService(),
+                new BenchmarkStubs.StubAcquisitionService(),
+                null,
+                properties,
+                new AccountSequencer(properties, registry),
+                null,
+                new BenchmarkStubs.StubMovementCounterService(properties),
+                new BenchmarkStubs.StubDailyBalanceService(properties),
+                new TransactionMetrics(registry),
+                null,
+                null);
+        averageRequest = MockServerRequest.builder()
+                .pathVariable("month", "6")
+                .pathVariable("accountNumber", ACCOUNT_NUMBER)
+                .queryParam("year", "2021")
+                .build();
+    }
+
+    @Benchmark
+    public ServerResponse save() {
+        // the pipeline mutates the request body, every invocation gets its own
+        return handler.save(MockServerRequest.builder()
+                        .body(Mono.just(BenchmarkStubs.transaction())))
+                .block();
+    }
+
+    @Benchmark
+    public ServerResponse findAllByAccountNumber(PageRequest page) {
+        return handler.findAllByAccountNumber(page.request).block();
+    }
+
+    @Benchmark
+    public ServerResponse transactionAverageV2() {
+        return handler.transactionAverageV2(averageRequest).block();
+    }
+
+    @State(Scope.Benchmark)
+    public static class PageRequest {
+        @Param({"20", "200"})
+        public int limit;
+
+        private ServerRequest request;
+
+        @Setup
+        public void setUp() {
+            request = MockServerRequest.builder()
+                    .pathVariable("accountNumber", ACCOUNT_NUMBER)
+                    .queryParam("limit", String.valueOf(limit))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.mstransaction.benchmark;
+
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.utils.ModelCopier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round-trips of the nested {@code Transaction -> Bill -> Acquisition -> Product -> Rules} graph, with an
+ * {@link ObjectMapper} configured like the one Spring Boot gives the codecs, next to the field by field copy
+ * {@link ModelCopier} makes of every cached lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionSerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private ModelCopier modelCopier;
+    private Transaction transaction;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        modelCopier = new ModelCopier();
+        transaction = BenchmarkStubs.storedTransaction("60f1c7e2a4b5c6d7e8f90456");
+        json = objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public Transaction deserialize() throws IOException {
+        return objectMapper.readValue(json, Transaction.class);
+    }
+
+    @Benchmark
+    public Transaction roundTrip() throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(transaction), Transaction.class);
+    }
+
+    @Benchmark
+    public Bill copyBill() {
+        return modelCopier.copy(transaction.getBill());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.mstransaction.loadtest;
+
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.Customer;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * In-process stand-ins for SERVICE-BILL, SERVICE-ACQUISITION and SERVICE-CUSTOMER, serving the endpoints
+ * {@code BillService}, {@code AcquisitionService} and {@code CustomerService} call. Every response waits
+ * {@code latency} and fails with a 500 with probability {@code errorRate}.
+ */
+class DownstreamStubs {
+    private final Duration latency;
+    private final double errorRate;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private DisposableServer server;
+
+    DownstreamStubs(Duration latency, double errorRate) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+    }
+
+    DownstreamStubs start() {
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes
+                        .get("/bill/acc/{accountNumber}", (request, response) ->
+                                reply(response, bill(request.param("accountNumber"))))
+                        .get("/bill/acquisition/{iban}", (request, response) ->
+                                reply(response, bill(request.param("iban"))))
+                        .post("/bill/update", (request, response) ->
+                                echo(request, response, Bill.class))
+                        .get("/acquisition/bill/{accountNumber}", (request, response) ->
+                                reply(response, acquisition(request.param("accountNumber"))))
+                        .get("/acquisition/card/{iban}", (request, response) ->
+                                reply(response, acquisition(request.param("iban"))))
+                        .post("/acquisition/update", (request, response) ->
+                                echo(request, response, Acquisition.class))
+                        .get("/customer/identity/{identityNumber}", (request, response) ->
+                                reply(response, customer(request.param("identityNumber"))))
+                        .post("/customer/identity/batch", (request, response) ->
+                                respond(response, request.receive().aggregate().asByteArray()
+                                        .map(read(String[].class))
+                                        .map(DownstreamStubs::customers))))
+                .bindNow();
+        return this;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private Publisher<Void> reply(HttpServerResponse response, Object body) {
+        return respond(response, Mono.just(body));
+    }
+
+    private <T> Publisher<Void> echo(HttpServerRequest request, HttpServerResponse response, Class<T> type) {
+        return respond(response, request.receive().aggregate().asByteArray().map(read(type)));
+    }
+
+    private Publisher<Void> respond(HttpServerResponse response, Mono<?> body) {
+        Mono<Void> reply = ThreadLocalRandom.current().nextDouble() < errorRate
+                ? response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).send()
+                : body.flatMap(value -> response
+                        .header("Content-Type", "application/json")
+                        .sendByteArray(Mono.just(write(value)))
+                        .then());
+        return latency.isZero() ? reply : Mono.delay(latency).then(reply);
+    }
+
+    private <T> Function<byte[], T> read(Class<T> type) {
+        return bytes -> {
+            try {
+                return objectMapper.readValue(bytes, type);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private byte[] write(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Bill bill(String accountNumber) {
+        return Bill.builder()
+                .id(accountNumber)
+                .accountNumber(accountNumber)
+                .balance(Money.ofMinor(1_000_000))
+                .acquisition(acquisition(accountNumber))
+                .build();
+    }
+
+    private static Acquisition acquisition(String accountNumber) {
+        Rules rules = new Rules();
+        rules.setCustomerType("PERSONAL");
+        rules.setMaximumLimitMonthlyMovements(true);
+        rules.setMaximumLimitMonthlyMovementsQuantity(0);
+        Product product = new Product();
+        product.setProductName("AHORRO");
+        product.setProductType("PASIVO");
+        product.setRules(rules);
+        Acquisition acquisition = new Acquisition();
+        acquisition.setProduct(product);
+        acquisition.setIban("IBAN-" + accountNumber);
+        acquisition.setCustomerHolder(Collections.singletonList(customer("7" + accountNumber)));
+        return acquisition;
+    }
+
+    private static List<Customer> customers(String[] identityNumbers) {
+        List<Customer> customers = new ArrayList<>(identityNumbers.length);
+        for (String identityNumber : identityNumbers) {
+            customers.add(customer(identityNumber));
+        }
+        return customers;
+    }
+
+    private static Customer customer(String identityNumber) {
+        Customer customer = new Customer();
+        customer.setCustomerIdentityNumber(identityNumber);
+        return customer;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.mstransaction.loadtest;
+
+import com.example.mstransaction.MsTransactionApplication;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Starts the application against a local Mongo and {@link DownstreamStubs}, then drives a mixed workload at a fixed
+ * arrival rate and prints throughput and p50/p99/p999 latency per route. Latency is measured from the moment a request
+ * was due, so a slow server is not hidden by the client sending less. Settings are system properties:
+ * <ul>
+ *     <li>{@code loadtest.rate}: requests per second (200)</li>
+ *     <li>{@code loadtest.duration}: measured run, ISO-8601 (PT60S), after {@code loadtest.warmup} (PT10S)</li>
+ *     <li>{@code loadtest.accounts}: distinct account numbers (1000)</li>
+ *     <li>{@code loadtest.mix}: route weights ({@code create:40,history:30,average:15,top:15})</li>
+ *     <li>{@code loadtest.stub-latency}, {@code loadtest.stub-error-rate}: downstream behaviour (PT0.02S, 0.0)</li>
+ *     <li>{@code loadtest.mongo-uri}: database the application writes to (mongodb://localhost:27017/transaction-loadtest)</li>
+ *     <li>{@code loadtest.customer-batch}: look customers up in batches, {@code downstream.customer.batch-enabled} (true)</li>
+ * </ul>
+ */
+public class LoadTestHarness {
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final WebClient client;
+    private final int accounts;
+    private final List<Route> routes = new ArrayList<>();
+    private final int totalWeight;
+
+    LoadTestHarness(WebClient client, int accounts, Map<String, Integer> mix) {
+        this.client = client;
+        this.accounts = accounts;
+        int weight = 0;
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            weight += entry.getValue();
+            routes.add(new Route(entry.getKey(), weight));
+        }
+        this.totalWeight = weight;
+    }
+
+    public static void main(String[] args) {
+        DownstreamStubs stubs = new DownstreamStubs(
+                Duration.parse(System.getProperty("loadtest.stub-latency", "PT0.02S")),
+                Double.parseDouble(System.getProperty("loadtest.stub-error-rate", "0.0")))
+                .start();
+        ConfigurableApplicationContext context = null;
+        try {
+            configureApplication(stubs.baseUrl());
+            context = SpringApplication.run(MsTransactionApplication.class, args);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadTestHarness harness = new LoadTestHarness(
+                    WebClient.create("http://localhost:" + port),
+                    Integer.getInteger("loadtest.accounts", 1000),
+                    parseMix(System.getProperty("loadtest.mix", "create:40,history:30,average:15,top:15")));
+            int rate = Integer.getInteger("loadtest.rate", 200);
+            harness.run(rate, Duration.parse(System.getProperty("loadtest.warmup", "PT10S")));
+            harness.reset();
+            Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT60S"));
+            harness.run(rate, duration);
+            harness.report(duration);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            stubs.stop();
+        }
+    }
+
+    /**
+     * Discovery, config server and the dev profile are replaced so the only external dependency is Mongo.
+     */
+    private static void configureApplication(String stubUrl) {
+        System.setProperty("spring.profiles.active", "loadtest");
+        System.setProperty("spring.cloud.config.enabled", "false");
+        System.setProperty("eureka.client.enabled", "false");
+        System.setProperty("server.port", "0");
+        System.setProperty("downstream.customer.batch-enabled", System.getProperty("loadtest.customer-batch", "true"));
+        System.setProperty("spring.data.mongodb.uri",
+                System.getProperty("loadtest.mongo-uri", "mongodb://localhost:27017/transaction-loadtest"));
+        for (String service : new String[]{"SERVICE-BILL", "SERVICE-ACQUISITION", "SERVICE-CUSTOMER"}) {
+            System.setProperty("spring.cloud.discovery.client.simple.instances[" + service + "][0].uri", stubUrl);
+        }
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    void run(int rate, Duration duration) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long requests = duration.toNanos() / intervalNanos;
+        Flux.interval(Duration.ofNanos(intervalNanos))
+                .take(requests)
+                .flatMap(tick -> {
+                    Route route = pick();
+                    long due = start + (tick + 1) * intervalNanos;
+                    return send(route.name)
+                            .doOnSuccess(ok -> route.record(due, ok))
+                            .onErrorResume(e -> {
+                                route.record(due, false);
+                                return Mono.empty();
+                            });
+                }, Integer.MAX_VALUE)
+                .blockLast();
+    }
+
+    void reset() {
+        routes.forEach(Route::reset);
+    }
+
+    void report(Duration duration) {
+        double seconds = duration.toMillis() / 1000.0;
+        System.out.printf(Locale.ROOT, "%-8s %10s %10s %8s %10s %10s %10s %10s%n",
+                "route", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Route route : routes) {
+            Histogram histogram = route.latencies.getIntervalHistogram();
+            System.out.printf(Locale.ROOT, "%-8s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    route.name,
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / seconds,
+                    route.errors.sum(),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+    }
+
+    private Route pick() {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Route route : routes) {
+            if (value < route.upperWeight) {
+                return route;
+            }
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    private Mono<Boolean> send(String route) {
+        String accountNumber = String.valueOf(1_000_000 + ThreadLocalRandom.current().nextInt(accounts));
+        LocalDate today = LocalDate.now(ZoneId.of("America/Bogota"));
+        switch (route) {
+            case "create":
+                return exchange(client.post()
+                        .uri("/transaction/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(createBody(accountNumber)));
+            case "history":
+                return exchange(client.get().uri("/transaction/bill/{accountNumber}", accountNumber));
+            case "average":
+                return exchange(client.get().uri("/transaction/average2/{month}/{accountNumber}?year={year}",
+                        today.getMonthValue(), accountNumber, today.getYear()));
+            case "top":
+                return exchange(client.get().uri("/transaction/top/date/{dateTop}", today));
+            default:
+                return Mono.error(new IllegalArgumentException("Unknown route " + route));
+        }
+    }
+
+    private static Mono<Boolean> exchange(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody()
+                .thenReturn(response.statusCode().is2xxSuccessful() || response.statusCode() == HttpStatus.NOT_FOUND));
+    }
+
+    private static Map<String, Object> createBody(String accountNumber) {
+        Map<String, Object> bill = new LinkedHashMap<>();
+        bill.put("accountNumber", accountNumber);
+        bill.put("balance", 10_000.0);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("transactionType", "DEPOSIT");
+        body.put("transactionAmount", 100.0);
+        body.put("description", "load test");
+        body.put("bill", bill);
+        return body;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Route {
+        private final String name;
+        private final int upperWeight;
+        private final Recorder latencies = new Recorder(MAX_LATENCY_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+
+        private Route(String name, int upperWeight) {
+            this.name = name;
+            this.upperWeight = upperWeight;
+        }
+
+        private void record(long due, Boolean ok) {
+            latencies.recordValue(Math.max(0, Math.min(System.nanoTime() - due, MAX_LATENCY_NANOS)));
+            if (!Boolean.TRUE.equals(ok)) {
+                errors.increment();
+            }
+        }
+
+        private void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.utils.ModelCopier;
+import com.example.mstransaction.utils.ReactiveLookupCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches in front of the SERVICE-BILL and SERVICE-ACQUISITION lookups. Sizes and TTLs are set under
+ * {@code downstream.{bill,acquisition}.cache-*}; entries are evicted by the services when an update succeeds.
+ */
+@Configuration
+public class CacheConfig {
+    @Bean
+    public ReactiveLookupCache<String, Bill> billByAccountNumberCache(DownstreamProperties properties, ModelCopier copier, MeterRegistry registry) {
+        return billCache("bill.accountNumber", properties.getBill(), copier, registry);
+    }
+
+    @Bean
+    public ReactiveLookupCache<String, Bill> billByIbanCache(DownstreamProperties properties, ModelCopier copier, MeterRegistry registry) {
+        return billCache("bill.iban", properties.getBill(), copier, registry);
+    }
+
+    @Bean
+    public ReactiveLookupCache<String, Acquisition> acquisitionByAccountNumberCache(DownstreamProperties properties, ModelCopier copier, MeterRegistry registry) {
+        return acquisitionCache("acquisition.accountNumber", properties.getAcquisition(), copier, registry);
+    }
+
+    @Bean
+    public ReactiveLookupCache<String, Acquisition> acquisitionByIbanCache(DownstreamProperties properties, ModelCopier copier, MeterRegistry registry) {
+        return acquisitionCache("acquisition.iban", properties.getAcquisition(), copier, registry);
+    }
+
+    private static ReactiveLookupCache<String, Bill> billCache(String name, DownstreamProperties.Client client, ModelCopier copier, MeterRegistry registry) {
+        return new ReactiveLookupCache<>(name, client.getCacheMaximumSize(), client.getCacheTtl(),
+                copier::copy, registry);
+    }
+
+    private static ReactiveLookupCache<String, Acquisition> acquisitionCache(String name, DownstreamProperties.Client client, ModelCopier copier, MeterRegistry registry) {
+        return new ReactiveLookupCache<>(name, client.getCacheMaximumSize(), client.getCacheTtl(),
+                copier::copy, registry);
+    }
+}
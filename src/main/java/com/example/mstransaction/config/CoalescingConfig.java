@@ -0,0 +1,53 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Customer;
+import com.example.mstransaction.utils.BatchLoader;
+import com.example.mstransaction.utils.ModelCopier;
+import com.example.mstransaction.utils.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Request coalescing for the downstream lookups. Sits below the caches of {@link CacheConfig}, so it
+ * also covers cache misses, expired entries and lookups that are never cached. With
+ * {@code downstream.customer.batch-enabled} customers are looked up in batches, which also coalesce the keys
+ * waiting in a batch.
+ */
+@Configuration
+public class CoalescingConfig {
+    @Bean
+    public SingleFlight<String, Bill> billByAccountNumberFlight(ModelCopier copier, MeterRegistry registry) {
+        return new SingleFlight<>("bill.accountNumber", copier::copy, registry);
+    }
+
+    @Bean
+    public SingleFlight<String, Bill> billByIbanFlight(ModelCopier copier, MeterRegistry registry) {
+        return new SingleFlight<>("bill.iban", copier::copy, registry);
+    }
+
+    @Bean
+    public SingleFlight<String, Acquisition> acquisitionByAccountNumberFlight(ModelCopier copier, MeterRegistry registry) {
+        return new SingleFlight<>("acquisition.accountNumber", copier::copy, registry);
+    }
+
+    @Bean
+    public SingleFlight<String, Acquisition> acquisitionByIbanFlight(ModelCopier copier, MeterRegistry registry) {
+        return new SingleFlight<>("acquisition.iban", copier::copy, registry);
+    }
+
+    @Bean
+    public SingleFlight<String, Customer> customerByIdentityNumberFlight(ModelCopier copier, MeterRegistry registry) {
+        return new SingleFlight<>("customer.identityNumber", copier::copy, registry);
+    }
+
+    @Bean
+    public BatchLoader<String, Customer> customerByIdentityNumberBatch(DownstreamProperties properties, ModelCopier copier,
+                                                                      MeterRegistry registry) {
+        DownstreamProperties.Client customer = properties.getCustomer();
+        return new BatchLoader<>("customer.identityNumber", customer.getBatchWindow(), customer.getBatchMaxSize(),
+                copier::copy, registry);
+    }
+}
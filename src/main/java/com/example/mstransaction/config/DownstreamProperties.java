@@ -0,0 +1,59 @@
+package com.example.mstransaction.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Connection settings of the services resolved through Eureka, one entry per downstream.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "downstream")
+public class DownstreamProperties {
+    private Client bill = new Client("http://SERVICE-BILL/bill");
+    private Client acquisition = new Client("http://SERVICE-ACQUISITION/acquisition");
+    private Client customer = new Client("http://SERVICE-CUSTOMER/customer");
+
+    @Data
+    @NoArgsConstructor
+    public static class Client {
+        private String baseUrl;
+        private int maxConnections = 100;
+        /** Requests allowed to wait for a connection once the pool is exhausted. */
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        /** Entries kept by the lookup caches of this service; 0 disables caching. */
+        private long cacheMaximumSize = 10_000;
+        private Duration cacheTtl = Duration.ofMinutes(5);
+        /** Sends a second attempt of the idempotent lookups that are slower than {@link #hedgePercentile}. */
+        private boolean hedgeEnabled = false;
+        private double hedgePercentile = 0.95;
+        /** Shortest wait before a hedge, also used until latencies have been observed. */
+        private Duration hedgeMinDelay = Duration.ofMillis(20);
+        /** Hedges allowed as a fraction of the lookups; unused allowance is kept up to {@link #hedgeBurst} hedges. */
+        private double hedgeBudget = 0.05;
+        private int hedgeBurst = 10;
+        /**
+         * Looks keys up with one batch call per {@link #batchWindow} instead of one call per key. Only for services
+         * that serve the batch endpoint; a 404 or 405 from it turns batching off until the next start.
+         */
+        private boolean batchEnabled = false;
+        /** How long a batched lookup waits for other keys before its batch is sent. */
+        private Duration batchWindow = Duration.ofMillis(5);
+        /** Keys that send a batch at once, without waiting for the end of {@link #batchWindow}. */
+        private int batchMaxSize = 50;
+
+        public Client(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+    }
+}
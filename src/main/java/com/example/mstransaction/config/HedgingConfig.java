@@ -0,0 +1,38 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.utils.Hedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hedging of the idempotent downstream lookups, one budget and one latency distribution per lookup.
+ * It wraps the HTTP call itself, below the caches of {@link CacheConfig} and the coalescing of {@link CoalescingConfig}.
+ */
+@Configuration
+public class HedgingConfig {
+    @Bean
+    public Hedger billByAccountNumberHedger(DownstreamProperties properties, MeterRegistry registry) {
+        return new Hedger("bill.accountNumber", properties.getBill(), registry);
+    }
+
+    @Bean
+    public Hedger billByIbanHedger(DownstreamProperties properties, MeterRegistry registry) {
+        return new Hedger("bill.iban", properties.getBill(), registry);
+    }
+
+    @Bean
+    public Hedger acquisitionByAccountNumberHedger(DownstreamProperties properties, MeterRegistry registry) {
+        return new Hedger("acquisition.accountNumber", properties.getAcquisition(), registry);
+    }
+
+    @Bean
+    public Hedger acquisitionByIbanHedger(DownstreamProperties properties, MeterRegistry registry) {
+        return new Hedger("acquisition.iban", properties.getAcquisition(), registry);
+    }
+
+    @Bean
+    public Hedger customerByIdentityNumberHedger(DownstreamProperties properties, MeterRegistry registry) {
+        return new Hedger("customer.identityNumber", properties.getCustomer(), registry);
+    }
+}
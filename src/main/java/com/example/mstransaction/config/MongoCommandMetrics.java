@@ -0,0 +1,132 @@
+package com.example.mstransaction.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency ({@code transaction.mongo.commands}) and documents returned ({@code transaction.mongo.documents}) of every
+ * Mongo command, tagged with {@code command} and {@code query}. {@code query} is the comment the repository method sets
+ * with {@code @Meta(comment = ...)}, or the command name for commands without one (CRUD methods, inserts). The
+ * {@code getMore} of a cursor is tagged with the query that opened it.
+ */
+public class MongoCommandMetrics implements CommandListener {
+    private static final String COMMANDS_TIMER = "transaction.mongo.commands";
+    private static final String DOCUMENTS_SUMMARY = "transaction.mongo.documents";
+    private static final String GET_MORE = "getMore";
+    private static final String KILL_CURSORS = "killCursors";
+    private final MeterRegistry registry;
+    private final ConcurrentMap<Integer, Started> startedByRequest = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> queriesByCursor = new ConcurrentHashMap<>();
+
+    public MongoCommandMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonDocument command = event.getCommand();
+        String query = null;
+        long cursorId = 0;
+        BsonValue comment = command.get("comment");
+        if (comment != null && comment.isString()) {
+            query = comment.asString().getValue();
+        } else if (GET_MORE.equals(event.getCommandName()) && command.isInt64(GET_MORE)) {
+            cursorId = command.getInt64(GET_MORE).getValue();
+            query = queriesByCursor.get(cursorId);
+        } else if (KILL_CURSORS.equals(event.getCommandName()) && command.isArray("cursors")) {
+            command.getArray("cursors").forEach(id -> {
+                if (id.isInt64()) {
+                    queriesByCursor.remove(id.asInt64().getValue());
+                }
+            });
+        }
+        startedByRequest.put(event.getRequestId(), new Started(query == null ? event.getCommandName() : query, cursorId));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Started started = startedByRequest.remove(event.getRequestId());
+        if (started == null) {
+            return;
+        }
+        Tags tags = Tags.of("command", event.getCommandName(), "query", started.query);
+        timer(tags.and("outcome", "success")).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        BsonDocument response = event.getResponse();
+        BsonDocument cursor = response.isDocument("cursor") ? response.getDocument("cursor") : null;
+        if (cursor != null) {
+            trackCursor(cursor, started);
+            documents(tags).record(batchSize(cursor));
+        } else if (response.isNumber("n")) {
+            documents(tags).record(response.getNumber("n").longValue());
+        } else if (response.containsKey("value")) {
+            documents(tags).record(response.get("value").isNull() ? 0 : 1);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Started started = startedByRequest.remove(event.getRequestId());
+        if (started == null) {
+            return;
+        }
+        if (started.cursorId != 0) {
+            queriesByCursor.remove(started.cursorId);
+        }
+        timer(Tags.of("command", event.getCommandName(), "query", started.query, "outcome", "failure"))
+                .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The first batch registers the cursor while it stays open, the last batch of a {@code getMore} forgets it.
+     */
+    private void trackCursor(BsonDocument cursor, Started started) {
+        long id = cursor.isInt64("id") ? cursor.getInt64("id").getValue() : 0;
+        if (id != 0) {
+            queriesByCursor.put(id, started.query);
+        } else if (started.cursorId != 0) {
+            queriesByCursor.remove(started.cursorId);
+        }
+    }
+
+    private static int batchSize(BsonDocument cursor) {
+        BsonArray batch = cursor.isArray("firstBatch") ? cursor.getArray("firstBatch")
+                : cursor.isArray("nextBatch") ? cursor.getArray("nextBatch") : null;
+        return batch == null ? 0 : batch.size();
+    }
+
+    private Timer timer(Tags tags) {
+        return Timer.builder(COMMANDS_TIMER)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary documents(Tags tags) {
+        return DistributionSummary.builder(DOCUMENTS_SUMMARY)
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static final class Started {
+        private final String query;
+        private final long cursorId;
+
+        private Started(String query, long cursorId) {
+            this.query = query;
+            this.cursorId = cursorId;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.models.entities.Money;
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.Arrays;
+
+/**
+ * {@link Money} is written as a {@code Decimal128} in major units. It is read from a {@code Decimal128} and from the
+ * doubles and integers of the documents written before, and of aggregates such as {@code $sum} over a mix of both.
+ */
+@Configuration
+public class MongoConversionsConfig {
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(Arrays.asList(
+                new MoneyToDecimal128(),
+                new Decimal128ToMoney(),
+                new DoubleToMoney(),
+                new IntegerToMoney(),
+                new LongToMoney()));
+    }
+
+    @WritingConverter
+    static class MoneyToDecimal128 implements Converter<Money, Decimal128> {
+        @Override
+        public Decimal128 convert(Money source) {
+            return source.toDecimal128();
+        }
+    }
+
+    @ReadingConverter
+    static class Decimal128ToMoney implements Converter<Decimal128, Money> {
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.of(source);
+        }
+    }
+
+    @ReadingConverter
+    static class DoubleToMoney implements Converter<Double, Money> {
+        @Override
+        public Money convert(Double source) {
+            return Money.of(source.doubleValue());
+        }
+    }
+
+    @ReadingConverter
+    static class IntegerToMoney implements Converter<Integer, Money> {
+        @Override
+        public Money convert(Integer source) {
+            return Money.of(source);
+        }
+    }
+
+    @ReadingConverter
+    static class LongToMoney implements Converter<Long, Money> {
+        @Override
+        public Money convert(Long source) {
+            return Money.of(source);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.mstransaction.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoMetricsConfig {
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandMetricsCustomizer(MeterRegistry registry) {
+        return settings -> settings.addCommandListener(new MongoCommandMetrics(registry));
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.mstransaction.config;
 
 import com.example.mstransaction.handler.TransactionHandler;
+import com.example.mstransaction.utils.TransactionMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
@@ -13,22 +15,30 @@ import static org.springframework.web.reactive.function.server.RouterFunctions.r
 @Configuration
 public class RouterConfig {
     @Bean
-    public RouterFunction<ServerResponse> rutas(TransactionHandler handler){
+    public RouterFunction<ServerResponse> rutas(TransactionHandler handler, TransactionMetrics metrics){
         return route(GET("/transaction"), handler::findAll)
+                .andRoute(GET("/transaction/stream"), handler::stream)
                 .andRoute(GET("/transaction/{id}"), handler::findById)
+                .andRoute(GET("/transaction/snapshot/{snapshotId}"), handler::findSnapshot)
                 .andRoute(GET("/transaction/acc/{accountNumber}"), handler::findByAccountNumber)
                 .andRoute(GET("/transaction/bill/{accountNumber}"), handler::findAllByAccountNumber)
                 .andRoute(GET("/transaction/bill/acquisition/{iban}"), handler::findByAcquisitionIban)
                 .andRoute(GET("/transaction/acquisition/{accountNumber}"), handler::findByAcquisitionAccountNumber)
                 .andRoute(GET("/transaction/period/{period}/dateInit/{dateInit}/product/{productName}"), handler::generateCommissionPerProductInRange)
+                .andRoute(GET("/transaction/period/{period}/dateInit/{dateInit}/product/{productName}/summary"), handler::generateCommissionSummaryPerProductInRange)
                 .andRoute(GET("/transaction/between/date/{periodDay}"), handler::transactionBetweenDates)
                 .andRoute(GET("/transaction/top/date/{dateTop}"), handler::transactionTop)
-                //.andRoute(GET("/transaction/average/{month}/{accountNumber}"), handler::transactionAverage)
+                .andRoute(GET("/transaction/top/date/{dateTop}/ranking"), handler::transactionTopRanking)
+                .andRoute(GET("/transaction/average/{month}/{accountNumber}"), handler::transactionAverage)
                 .andRoute(GET("/transaction/average2/{month}/{accountNumber}"), handler::transactionAverageV2)
                 .andRoute(POST("/transaction/acquisition/update"), handler::updateAcquisition)
+                .andRoute(POST("/transaction/daily-balance/backfill"), handler::backfillDailyBalance)
+                .andRoute(POST("/transaction/storage/migrate"), handler::migrateStorage)
                 .andRoute(POST("/transaction/create"), handler::save)
+                .andRoute(POST("/transaction/bulk").and(contentType(MediaType.APPLICATION_NDJSON)), handler::saveAll)
                 .andRoute(PUT("/transaction/{id}"), handler::update)
-                .andRoute(DELETE("/transaction/{id}"), handler::delete);
+                .andRoute(DELETE("/transaction/{id}"), handler::delete)
+                .filter(metrics.routeFilter());
 
     }
 }
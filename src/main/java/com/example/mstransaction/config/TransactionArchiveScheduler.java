@@ -0,0 +1,42 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.services.TransactionArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the archive job every {@code transaction.archive.interval} once the application is ready, when
+ * {@code transaction.archive.enabled}. A failed run is logged and the next one starts at the next tick.
+ */
+@Component
+@Slf4j(topic = "TRANSACTION_ARCHIVE")
+public class TransactionArchiveScheduler implements ApplicationListener<ApplicationReadyEvent> {
+    private final TransactionArchiveService archiveService;
+    private final TransactionProperties properties;
+
+    @Autowired
+    public TransactionArchiveScheduler(TransactionArchiveService archiveService, TransactionProperties properties) {
+        this.archiveService = archiveService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!properties.getArchive().isEnabled()) {
+            return;
+        }
+        Flux.interval(properties.getArchive().getInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> archiveService.archive()
+                        .onErrorResume(error -> {
+                            log.error("ARCHIVE_RUN_FAILED", error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.models.entities.DailyBalance;
+import com.example.mstransaction.models.entities.MovementCounter;
+import com.example.mstransaction.models.entities.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes declared on {@link Transaction}, {@link DailyBalance} and {@link MovementCounter} once the application
+ * is ready and logs the winning plan of each repository query, so a query that falls back to a COLLSCAN shows up in the
+ * startup log instead of in production latency.
+ */
+@Component
+@Slf4j(topic = "TRANSACTION_INDEXES")
+public class TransactionIndexInitializer implements ApplicationListener<ApplicationReadyEvent> {
+    private static final String COLLECTION_SCAN = "COLLSCAN";
+    private static final List<Class<?>> INDEXED_DOCUMENTS = Arrays.asList(Transaction.class, DailyBalance.class, MovementCounter.class);
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final TransactionProperties properties;
+
+    @Autowired
+    public TransactionIndexInitializer(ReactiveMongoTemplate mongoTemplate, MongoMappingContext mappingContext, TransactionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.mappingContext = mappingContext;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Flux<String> indexes = properties.getIndexes().isCreateOnStartup() ? ensureIndexes() : Flux.empty();
+        Flux<Document> plans = properties.getIndexes().isExplainOnStartup() ? explainQueries() : Flux.empty();
+        indexes.thenMany(plans)
+                .subscribe(plan -> { }, error -> log.error("INDEX_INITIALIZATION_FAILED", error));
+    }
+
+    private Flux<String> ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        return Flux.fromIterable(INDEXED_DOCUMENTS)
+                .concatMap(document -> {
+                    ReactiveIndexOperations indexOperations = mongoTemplate.indexOps(document);
+                    return Flux.fromIterable(resolver.resolveIndexFor(document))
+                            .concatMap(indexOperations::ensureIndex)
+                            .doOnNext(name -> log.info("INDEX_READY: {}.{}", mongoTemplate.getCollectionName(document), name));
+                });
+    }
+
+    private Flux<Document> explainQueries() {
+        return Flux.fromIterable(repositoryQueries().entrySet())
+                .concatMap(query -> mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                        .flatMap(collection -> Mono.from(collection.find(query.getValue().filter).sort(query.getValue().sort).explain()))
+                        .doOnNext(explain -> report(query.getKey(), explain)));
+    }
+
+    /**
+     * Filters and sorts equivalent to the ones the {@code TransactionQueryRouter} sends for each query comment.
+     * Keep in sync when a query is added or changed.
+     */
+    private static Map<String, PlannedQuery> repositoryQueries() {
+        Date now = new Date();
+        Document byAccount = new Document("account.accountNumber", "");
+        Document inRange = new Document("$gte", now).append("$lt", now);
+        Document accountOrder = new Document("transactionDate", 1).append("_id", 1);
+        Map<String, PlannedQuery> queries = new LinkedHashMap<>();
+        queries.put("findAllCompact",
+                new PlannedQuery(new Document(), new Document("_id", 1)));
+        queries.put("findAllByBill_AccountNumber",
+                new PlannedQuery(byAccount, accountOrder));
+        queries.put("findAccountPageAfter",
+                new PlannedQuery(new Document(byAccount)
+                        .append("$or", Arrays.asList(
+                                new Document("transactionDate", new Document("$gt", now)),
+                                new Document("transactionDate", now).append("_id", new Document("$gt", new ObjectId())))),
+                        accountOrder));
+        queries.put("findAccountPageBefore",
+                new PlannedQuery(new Document(byAccount)
+                        .append("$or", Arrays.asList(
+                                new Document("transactionDate", new Document("$lt", now)),
+                                new Document("transactionDate", now).append("_id", new Document("$lt", new ObjectId())))),
+                        new Document("transactionDate", -1).append("_id", -1)));
+        queries.put("findByTransactionDateBetween",
+                new PlannedQuery(new Document("transactionDate", new Document("$gt", now).append("$lt", now)), new Document()));
+        queries.put("findByBill_Acquisition_Product_ProductName",
+                new PlannedQuery(new Document("account.acquisition.product.productName", ""), accountOrder));
+        queries.put("findByProductNameInRange",
+                new PlannedQuery(new Document("account.acquisition.product.productName", "").append("transactionDate", inRange),
+                        new Document()));
+        queries.put("findDailyLastBalance",
+                new PlannedQuery(new Document(byAccount).append("transactionDate", inRange), accountOrder));
+        queries.put("findLastBalancePerAccount",
+                new PlannedQuery(new Document("transactionDate", inRange), accountOrder));
+        queries.put("summarizeCommissionByProduct",
+                new PlannedQuery(new Document("account.acquisition.product.productName", "").append("transactionDate", inRange),
+                        new Document()));
+        queries.put("findTop",
+                new PlannedQuery(new Document("transactionDate", inRange), new Document("transactionDate", -1).append("_id", -1)));
+        queries.put("findTop?accountNumber&order=AMOUNT",
+                new PlannedQuery(new Document(byAccount).append("transactionDate", inRange),
+                        new Document("transactionAmount", -1).append("transactionDate", -1).append("_id", -1)));
+        return queries;
+    }
+
+    private static void report(String query, Document explain) {
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        Document winningPlan = queryPlanner == null ? null : queryPlanner.get("winningPlan", Document.class);
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan, stages);
+        if (stages.contains(COLLECTION_SCAN)) {
+            log.warn("QUERY_PLAN {} uses a collection scan: {}", query, stages);
+        } else {
+            log.info("QUERY_PLAN {}: {}", query, stages);
+        }
+    }
+
+    private static void collectStages(Document plan, List<String> stages) {
+        if (plan == null) {
+            return;
+        }
+        stages.add(plan.getString("stage"));
+        collectStages(plan.get("inputStage", Document.class), stages);
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            inputStages.forEach(input -> collectStages(input, stages));
+        }
+    }
+
+    private static final class PlannedQuery {
+        private final Document filter;
+        private final Document sort;
+
+        private PlannedQuery(Document filter, Document sort) {
+            this.filter = filter;
+            this.sort = sort;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.mstransaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.DeprecatedConfigurationProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "transaction")
+public class TransactionProperties {
+    /**
+     * Business-day zone: decides the calendar day of a transaction for the daily balance view, the top rankings, the
+     * monthly averages and the monthly movement counters.
+     */
+    private String zoneId = "America/Bogota";
+    private Average average = new Average();
+    private Indexes indexes = new Indexes();
+    private Page page = new Page();
+    private Report report = new Report();
+    private Sequencer sequencer = new Sequencer();
+    private Bulk bulk = new Bulk();
+    private Movements movements = new Movements();
+    private DailyBalance dailyBalance = new DailyBalance();
+    private Top top = new Top();
+    private Compaction compaction = new Compaction();
+    private Feed feed = new Feed();
+    private Archive archive = new Archive();
+    private Split split = new Split();
+
+    /**
+     * {@code transaction.zone-id}, or the former {@code transaction.average.zone-id} while a configuration still sets it.
+     */
+    public String getZoneId() {
+        return average.getZoneId() != null ? average.getZoneId() : zoneId;
+    }
+
+    @Data
+    public static class Average {
+        /** Former name of {@code transaction.zone-id}; still read, and wins over it when set. */
+        private String zoneId;
+        /** Year used when the request does not send one; the current year in {@code transaction.zone-id} when empty. */
+        private Integer year;
+
+        @Deprecated
+        @DeprecatedConfigurationProperty(replacement = "transaction.zone-id")
+        public String getZoneId() {
+            return zoneId;
+        }
+    }
+
+    @Data
+    public static class Indexes {
+        /** Create the indexes declared on the transaction document when the application starts. */
+        private boolean createOnStartup = true;
+        /** Log the winning plan of every repository query once the indexes are in place. */
+        private boolean explainOnStartup = true;
+    }
+
+    @Data
+    public static class Page {
+        /** Page size of the account history when the request does not send {@code limit}. */
+        private int defaultLimit = 20;
+        /** Largest {@code limit} accepted for the account history. */
+        private int maxLimit = 200;
+    }
+
+    @Data
+    public static class Report {
+        /** Longest period, in days, accepted by the commission per product report. */
+        private int maxPeriodDays = 93;
+        /** Longest range, in days either way, accepted by the transactions between dates listing. */
+        private int maxBetweenDays = 366;
+    }
+
+    @Data
+    public static class Sequencer {
+        /** Lanes the accounts are hashed to; creates of accounts in different lanes run in parallel. */
+        private int lanes = 64;
+    }
+
+    @Data
+    public static class Bulk {
+        /** Movements read from the request body before they are grouped by account and written. */
+        private int chunkSize = 1000;
+        /** Accounts of a chunk processed at the same time. */
+        private int accountConcurrency = 8;
+    }
+
+    @Data
+    public static class Movements {
+        /** Movements per calendar month without commission. */
+        private int freePerMonth = 5;
+        /** Commission charged for every movement of the month after the free ones. */
+        private BigDecimal commission = new BigDecimal("2.50");
+    }
+
+    @Data
+    public static class DailyBalance {
+        /** Days aggregated at the same time when the daily balance view is rebuilt. */
+        private int backfillConcurrency = 4;
+        /** Longest range, in days, accepted by one backfill request. */
+        private int maxBackfillDays = 366;
+    }
+
+    @Data
+    public static class Top {
+        /** Transactions returned by the ranking when the request does not send {@code limit}. */
+        private int defaultLimit = 10;
+        private int maxLimit = 100;
+    }
+
+    @Data
+    public static class Compaction {
+        /** Snapshot ids known to be stored, skipped without a write. */
+        private long knownSnapshots = 10_000;
+        /** Legacy transactions rewritten with one bulk write by the storage migration. */
+        private int batchSize = 500;
+        /** Batches of the storage migration written at the same time. */
+        private int concurrency = 4;
+    }
+
+    @Data
+    public static class Feed {
+        /** Events kept for a subscriber that reads slower than transactions are created. */
+        private int bufferSize = 256;
+        /** What happens to a subscriber whose buffer is full: DROP_OLDEST, DROP_LATEST or ERROR (disconnects it). */
+        private BufferOverflowStrategy overflow = BufferOverflowStrategy.DROP_OLDEST;
+    }
+
+    @Data
+    public static class Archive {
+        /** Run the archive job on this instance; the checkpoint lease keeps other instances out while it runs. */
+        private boolean enabled = false;
+        /** Transactions older than this are moved to the monthly {@code transaction_yyyy_MM} buckets. */
+        private Duration olderThan = Duration.ofDays(180);
+        /** Time between two runs of the archive job. */
+        private Duration interval = Duration.ofHours(1);
+        /** Transactions moved by one batch. */
+        private int batchSize = 500;
+        /** Pause after every batch, bounds the write load a run puts on the live collection. */
+        private Duration batchDelay = Duration.ofMillis(200);
+        /** How long a run holds the checkpoint; renewed with every batch. */
+        private Duration lease = Duration.ofMinutes(5);
+        /** How often the list of buckets is read again to see the ones other instances created. */
+        private Duration bucketRefresh = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Split {
+        /** A date-ranged query gets one slice per span of its range. */
+        private Duration sliceSpan = Duration.ofDays(7);
+        /** Upper bound of the slices of one query, whatever its range. */
+        private int maxSlices = 16;
+        /** Slices of one query queried at the same time. */
+        private int concurrency = 4;
+    }
+}
@@ -1,10 +1,19 @@
 package com.example.mstransaction.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * One load-balanced {@link WebClient} per downstream service, each with its own connection pool.
+ * Pool metrics are published under {@code reactor.netty.connection.provider.*} tagged with the pool name.
+ */
 @Configuration
 public class WebClientConfig {
     @Bean
@@ -12,4 +21,59 @@ public class WebClientConfig {
     public WebClient.Builder registrarWebClient() {
         return WebClient.builder();
     }
-}
\ No newline at end of file
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider billConnectionProvider(DownstreamProperties properties) {
+        return connectionProvider("bill", properties.getBill());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider acquisitionConnectionProvider(DownstreamProperties properties) {
+        return connectionProvider("acquisition", properties.getAcquisition());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider customerConnectionProvider(DownstreamProperties properties) {
+        return connectionProvider("customer", properties.getCustomer());
+    }
+
+    @Bean
+    public WebClient billWebClient(@LoadBalanced WebClient.Builder builder, @Qualifier("billConnectionProvider") ConnectionProvider provider, DownstreamProperties properties) {
+        return webClient(builder, provider, properties.getBill());
+    }
+
+    @Bean
+    public WebClient acquisitionWebClient(@LoadBalanced WebClient.Builder builder, @Qualifier("acquisitionConnectionProvider") ConnectionProvider provider, DownstreamProperties properties) {
+        return webClient(builder, provider, properties.getAcquisition());
+    }
+
+    @Bean
+    public WebClient customerWebClient(@LoadBalanced WebClient.Builder builder, @Qualifier("customerConnectionProvider") ConnectionProvider provider, DownstreamProperties properties) {
+        return webClient(builder, provider, properties.getCustomer());
+    }
+
+    private static ConnectionProvider connectionProvider(String name, DownstreamProperties.Client client) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(client.getMaxConnections())
+                .pendingAcquireMaxCount(client.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(client.getPendingAcquireTimeout())
+                .maxIdleTime(client.getMaxIdleTime())
+                .maxLifeTime(client.getMaxLifeTime())
+                .evictInBackground(client.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * The builder is cloned so the load balancer filter is kept while every client gets its own connector.
+     */
+    private static WebClient webClient(WebClient.Builder builder, ConnectionProvider provider, DownstreamProperties.Client client) {
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) client.getConnectTimeout().toMillis())
+                .responseTimeout(client.getResponseTimeout());
+        return builder.clone()
+                .baseUrl(client.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
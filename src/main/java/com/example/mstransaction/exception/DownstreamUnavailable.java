@@ -0,0 +1,13 @@
+package com.example.mstransaction.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A downstream service did not answer in time, failed with a 5xx or is shed by its circuit breaker or bulkhead.
+ */
+public class DownstreamUnavailable extends ResponseStatusException {
+    public DownstreamUnavailable(String service, Throwable e) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, String.format("THE SERVICE %s IS NOT AVAILABLE", service), e);
+    }
+}
@@ -1,51 +1,110 @@
 package com.example.mstransaction.handler;
 
+import com.example.mstransaction.config.TransactionProperties;
 import com.example.mstransaction.exception.MethodArgumentNotValid;
 import com.example.mstransaction.models.dto.AverageDTO;
+import com.example.mstransaction.models.dto.BulkItemResultDTO;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
+import com.example.mstransaction.models.dto.TransactionEventDTO;
+import com.example.mstransaction.models.dto.TransactionPageDTO;
 import com.example.mstransaction.models.entities.Acquisition;
 import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Money;
 import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.models.entities.TransactionType;
 import com.example.mstransaction.services.AcquisitionService;
 import com.example.mstransaction.services.BillService;
+import com.example.mstransaction.services.BillSnapshotService;
 import com.example.mstransaction.services.CustomerService;
+import com.example.mstransaction.services.DailyBalanceService;
 import com.example.mstransaction.services.ITransactionService;
+import com.example.mstransaction.services.MovementCounterService;
+import com.example.mstransaction.services.TransactionBulkService;
+import com.example.mstransaction.services.TransactionFeedService;
+import com.example.mstransaction.utils.AccountSequencer;
+import com.example.mstransaction.utils.MoneyAccumulator;
+import com.example.mstransaction.utils.TransactionCursor;
+import com.example.mstransaction.utils.TransactionMetrics;
+import com.example.mstransaction.utils.TransactionOrder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import java.net.URI;
 import java.time.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 @Slf4j(topic = "TRANSACTION_HANDLER")
 public class TransactionHandler {
-    public static final Double COMMISSION_PER_TRANSACTION = 2.5;
+    private static final Money EMPTY_ACCOUNT_BALANCE = Money.ofMinor(150_000);
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = Arrays.asList(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
     private final ITransactionService transactionService;
     private final BillService billService;
     private final AcquisitionService acquisitionService;
     private final CustomerService customerService;
+    private final TransactionProperties properties;
+    private final AccountSequencer accountSequencer;
+    private final TransactionBulkService transactionBulkService;
+    private final MovementCounterService movementCounterService;
+    private final DailyBalanceService dailyBalanceService;
+    private final TransactionMetrics metrics;
+    private final BillSnapshotService billSnapshotService;
+    private final TransactionFeedService transactionFeedService;
     @Autowired
-    public TransactionHandler(ITransactionService transactionService, BillService billService, AcquisitionService acquisitionService, CustomerService customerService) {
+    public TransactionHandler(ITransactionService transactionService, BillService billService, AcquisitionService acquisitionService, CustomerService customerService, TransactionProperties properties, AccountSequencer accountSequencer, TransactionBulkService transactionBulkService, MovementCounterService movementCounterService, DailyBalanceService dailyBalanceService, TransactionMetrics metrics, BillSnapshotService billSnapshotService, TransactionFeedService transactionFeedService) {
         this.transactionService = transactionService;
         this.billService = billService;
         this.acquisitionService = acquisitionService;
         this.customerService = customerService;
+        this.properties = properties;
+        this.accountSequencer = accountSequencer;
+        this.transactionBulkService = transactionBulkService;
+        this.movementCounterService = movementCounterService;
+        this.dailyBalanceService = dailyBalanceService;
+        this.metrics = metrics;
+        this.billSnapshotService = billSnapshotService;
+        this.transactionFeedService = transactionFeedService;
     }
 
     public Mono<ServerResponse> findAll(ServerRequest request){
-        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+        return ServerResponse.ok().contentType(streamingType(request).orElse(MediaType.APPLICATION_JSON))
                 .body(transactionService.findAll(), Transaction.class);
     }
 
+    /**
+     * Transactions as they are created, optionally filtered by {@code accountNumber} and {@code productName}.
+     * NDJSON clients receive {@link TransactionEventDTO}s; any other client receives Server-Sent Events whose id is
+     * the resume token, so an {@code EventSource} resumes through {@code Last-Event-ID}. Both can resume with
+     * {@code resumeAfter}.
+     */
+    public Mono<ServerResponse> stream(ServerRequest request){
+        String resumeAfter = request.queryParam("resumeAfter")
+                .orElse(request.headers().firstHeader("Last-Event-ID"));
+        Flux<TransactionEventDTO> events = transactionFeedService.listen(request.queryParam("accountNumber").orElse(null),
+                request.queryParam("productName").orElse(null), resumeAfter);
+        if (streamingType(request).filter(MediaType.APPLICATION_NDJSON::equals).isPresent()) {
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(events, TransactionEventDTO.class);
+        }
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(events.map(event -> ServerSentEvent.builder(event.getTransaction())
+                        .id(event.getResumeToken())
+                        .event("transaction")
+                        .build())));
+    }
+
     public Mono<ServerResponse> findById(ServerRequest request){
         String id = request.pathVariable("id");
         return errorHandler(
@@ -56,6 +115,17 @@ public class TransactionHandler {
         );
     }
 
+    /**
+     * Bill graph a transaction was created with, by the {@code snapshotId} of the transaction.
+     */
+    public Mono<ServerResponse> findSnapshot(ServerRequest request){
+        return billSnapshotService.findById(request.pathVariable("snapshotId"))
+                .flatMap(p -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(p))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
     public Mono<ServerResponse> findByAccountNumber(ServerRequest request){
         String accountNumber = request.pathVariable("accountNumber");
         return errorHandler(
@@ -95,47 +165,88 @@ public class TransactionHandler {
 
     public Mono<ServerResponse> save(ServerRequest request){
         Mono<Transaction> transaction = request.bodyToMono(Transaction.class);
+        return transaction
+                .flatMap(this::checkMovement)
+                .flatMap(transaction1 -> accountSequencer.submit(transaction1.getBill().getAccountNumber(),
+                        () -> createTransaction(transaction1)))
+                .onErrorMap(ArithmeticException.class, e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST,
+                        "The transactionAmount takes the balance out of the range of an amount", e))
+                .flatMap(newTransaction -> ServerResponse.created(URI.create("/api/transaction/".concat(newTransaction.getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(newTransaction));
+    }
+
+    private Mono<Transaction> checkMovement(Transaction transaction1){
+        if (transaction1.getBill() == null || transaction1.getBill().getAccountNumber() == null) {
+            return Mono.error(new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, "The movement has no account number", null));
+        }
+        if (TransactionType.of(transaction1.getTransactionType()).isPresent()
+                && (transaction1.getTransactionAmount() == null || transaction1.getTransactionAmount().compareTo(Money.zero()) <= 0)) {
+            return Mono.error(new MethodArgumentNotValid(HttpStatus.BAD_REQUEST,
+                    String.format("The transactionAmount of a %s must be greater than zero", transaction1.getTransactionType()), null));
+        }
+        return Mono.just(transaction1);
+    }
+
+    /**
+     * Read-modify-write of the acquisition and the bill of the account; callers have to run it through
+     * the {@link AccountSequencer} so two creates of the same account never interleave. The new balance is the
+     * stored one of the bill, read uncached inside the lane, moved by the amount of a {@link TransactionType} and less
+     * the commission; a movement of another type keeps the balance the client sent, as before the types were known.
+     * Every stage is timed as {@code transaction.save.stage}; the acquisition update runs after the response
+     * and is timed by {@link MovementCounterService}. A movement that is not inserted is taken back from the counter.
+     */
+    private Mono<Transaction> createTransaction(Transaction transaction1){
         Transaction newTransaction = new Transaction();
         Acquisition newAcquisition = new Acquisition();
-        return transaction
-               .flatMap(transaction1 -> {
-                   newTransaction.setTransactionType(transaction1.getTransactionType());
-                   newTransaction.setTransactionAmount(transaction1.getTransactionAmount());
-                   newTransaction.setDescription(transaction1.getDescription());
-                   newTransaction.setTransactionDate(LocalDateTime.now());
-                   newTransaction.setBill(transaction1.getBill());
-                   return acquisitionService.findByBillAccountNumber(transaction1.getBill().getAccountNumber());
-               })
-               .flatMap(acquisition1 -> {
-                   if (acquisition1
-                           .getProduct()
-                           .getRules()
-                           .getMaximumLimitMonthlyMovementsQuantity() > 4){
-                       newTransaction.setCommission(2.5);
-                       newTransaction.getBill().setBalance(newTransaction.getBill().getBalance() - COMMISSION_PER_TRANSACTION);
-                   }else{
-                       newTransaction.setCommission(0.0);
-                   }
-                   newAcquisition.setProduct(acquisition1.getProduct());
-                   newAcquisition.setCustomerHolder(acquisition1.getCustomerHolder());
-                   newAcquisition.getProduct().getRules().setMaximumLimitMonthlyMovementsQuantity(acquisition1
-                           .getProduct().getRules().getMaximumLimitMonthlyMovementsQuantity() + 1);
-                   newAcquisition.setCustomerAuthorizedSigner(acquisition1.getCustomerAuthorizedSigner());
-                   newAcquisition.setIban(acquisition1.getIban());
-                   newAcquisition.setBill(newTransaction.getBill());
-                   return acquisitionService.updateAcquisition(newAcquisition);
-               }).flatMap(acquisition -> {
-                   return billService.findByAccountNumber(acquisition.getBill().getAccountNumber()).flatMap(bill -> {
-                       bill.setBalance(newTransaction.getBill().getBalance());
-                       bill.setAcquisition(acquisition);
-                       return billService.updateBill(bill);
-                   });
-               }).flatMap(bill -> {
-                   newTransaction.setBill(bill);
-                   return transactionService.create(newTransaction);
-               }).flatMap(transactionResponse -> ServerResponse.created(URI.create("/api/transaction/".concat(newTransaction.getId())))
-                       .contentType(MediaType.APPLICATION_JSON)
-                       .bodyValue(newTransaction));
+        newTransaction.setTransactionType(transaction1.getTransactionType());
+        newTransaction.setTransactionAmount(transaction1.getTransactionAmount());
+        newTransaction.setDescription(transaction1.getDescription());
+        newTransaction.setTransactionDate(LocalDateTime.now());
+        String accountNumber = transaction1.getBill().getAccountNumber();
+        return acquisitionService.findByBillAccountNumber(accountNumber)
+               .transform(metrics.saveStage("acquisition_lookup"))
+               .flatMap(acquisition1 -> movementCounterService.increment(accountNumber, 1, acquisition1)
+                       .transform(metrics.saveStage("movement_counter"))
+                       .flatMap(counter -> writeTransaction(accountNumber, transaction1.getBill().getBalance(), newTransaction, newAcquisition, acquisition1, counter.getCount())
+                               .onErrorResume(e -> movementCounterService.release(counter, 1).then(Mono.error(e)))
+                               .switchIfEmpty(Mono.defer(() -> movementCounterService.release(counter, 1).then(Mono.empty())))))
+               .doOnNext(created -> movementCounterService.syncToAcquisition(accountNumber, newAcquisition));
+    }
+
+    private Mono<Transaction> writeTransaction(String accountNumber, Money requested, Transaction newTransaction,
+                                               Acquisition newAcquisition, Acquisition acquisition1, long movements){
+        newTransaction.setCommission(movementCounterService.commission(movements));
+        return billService.findLatestByAccountNumber(accountNumber).flatMap(bill -> {
+            newAcquisition.setProduct(acquisition1.getProduct());
+            newAcquisition.setCustomerHolder(acquisition1.getCustomerHolder());
+            newAcquisition.getProduct().getRules().setMaximumLimitMonthlyMovementsQuantity((int) movements);
+            newAcquisition.setCustomerAuthorizedSigner(acquisition1.getCustomerAuthorizedSigner());
+            newAcquisition.setIban(acquisition1.getIban());
+            Money stored = bill.getBalance() == null ? Money.zero() : bill.getBalance();
+            bill.setBalance(TransactionType.balanceAfter(newTransaction.getTransactionType(), stored, newTransaction.getTransactionAmount(), requested)
+                    .minus(newTransaction.getCommission()));
+            newAcquisition.setBill(Bill.builder()
+                    .id(bill.getId())
+                    .accountNumber(bill.getAccountNumber())
+                    .balance(bill.getBalance())
+                    .build());
+            bill.setAcquisition(newAcquisition);
+            return billService.updateBill(bill);
+        }).transform(metrics.saveStage("bill_update"))
+        .flatMap(bill -> {
+            newTransaction.setBill(bill);
+            return transactionService.create(newTransaction)
+                    .transform(metrics.saveStage("insert"));
+        });
+    }
+
+    /**
+     * Creates every movement of an NDJSON body and streams one {@link BulkItemResultDTO} per movement.
+     */
+    public Mono<ServerResponse> saveAll(ServerRequest request){
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(transactionBulkService.ingest(request.bodyToFlux(Transaction.class)), BulkItemResultDTO.class);
     }
 
     public Mono<ServerResponse> update(ServerRequest request){
@@ -162,15 +273,29 @@ public class TransactionHandler {
 
     public Mono<ServerResponse> findAllByAccountNumber(ServerRequest request){
         String accountNumber = request.pathVariable("accountNumber");
+        int limit;
+        Sort.Direction direction;
+        TransactionCursor after;
+        try {
+            limit = request.queryParam("limit").map(Integer::parseInt).orElse(properties.getPage().getDefaultLimit());
+            direction = Sort.Direction.fromString(request.queryParam("direction").orElse("desc"));
+            after = request.queryParam("after").map(TransactionCursor::parse).orElse(null);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return Mono.error(new MethodArgumentNotValid(
+                    HttpStatus.BAD_REQUEST, "The parameters limit, direction or after are not valid for this method", e));
+        }
+        if (limit < 1 || limit > properties.getPage().getMaxLimit()) {
+            return Mono.error(new MethodArgumentNotValid(HttpStatus.BAD_REQUEST,
+                    String.format("The limit must be between 1 and %d", properties.getPage().getMaxLimit()), null));
+        }
         Mono<Bill> bill = billService.findByAccountNumber(accountNumber);
-        return bill.flatMap(acc -> transactionService.findAll()
-                .filter(list -> {
-                    return list.getBill().getAccountNumber().equals(acc.getAccountNumber());
-                })
-                .collectList())
-                .flatMap(list -> ServerResponse.ok()
+        return bill.flatMap(acc -> transactionService
+                        .findAllByBill_AccountNumber(acc.getAccountNumber(), after, limit + 1, direction)
+                        .collectList())
+                .map(list -> toPage(list, limit))
+                .flatMap(page -> ServerResponse.ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(list)
+                .bodyValue(page)
                 .onErrorResume(e -> Mono.error(new MethodArgumentNotValid(
                         HttpStatus.BAD_REQUEST, String.format("The argument %s is not valid for this method", accountNumber), e)))
         );
@@ -181,144 +306,275 @@ public class TransactionHandler {
      * @param request productName
      * @param request period
      * @param request dateInit
-     * @return list of commission by product in range date
+     * @return list of transactions of the product in range date
      */
     public Mono<ServerResponse> generateCommissionPerProductInRange(ServerRequest request){
         String productName = request.pathVariable("productName");
-        String period = request.pathVariable("period");
-        String dateInit = request.pathVariable("dateInit");
-        LocalDate startDay =  LocalDate.parse(dateInit);
-        LocalDate endDay = startDay.plusDays(Integer.parseInt(period));
-        return transactionService.findByBill_Acquisition_Product_ProductName(productName)
-                .flatMap(transaction ->
-                        transactionService.findByTransactionDateBetween(startDay.atStartOfDay(), endDay.atStartOfDay())
-                                .filter(pf -> Objects.equals(pf.getBill().getAcquisition().getProduct().getProductName(), transaction.getBill().getAcquisition().getProduct().getProductName())))
-                .collectList()
+        return resolveZone(request)
+                .flatMap(zoneId -> reportRange(request, zoneId))
+                .flatMap(range -> transactionsResponse(request,
+                        transactionService.findByProductNameInRange(productName, range.getT1(), range.getT2())));
+    }
+
+    /**
+     *
+     * @param request productName
+     * @param request period
+     * @param request dateInit
+     * @return commission and amount totals of the product per day in range date
+     */
+    public Mono<ServerResponse> generateCommissionSummaryPerProductInRange(ServerRequest request){
+        String productName = request.pathVariable("productName");
+        return resolveZone(request)
+                .flatMap(zoneId -> reportRange(request, zoneId)
+                        .flatMap(range -> transactionService
+                                .summarizeCommissionByProduct(productName, range.getT1(), range.getT2(), zoneId)
+                                .collectList()))
                 .flatMap(t -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
-                        .bodyValue(t))
-                .switchIfEmpty(ServerResponse.notFound().build());
+                        .bodyValue(t));
     }
 
+    /**
+     * Most recent transaction of the day {@code dateTop}, whole day in the requested zone.
+     */
     public Mono<ServerResponse> transactionTop(ServerRequest request){
-        String dateTop = request.pathVariable("dateTop");
-        LocalDateTime startDay =  LocalDate.parse(dateTop).atStartOfDay();
-        LocalDateTime sixtyDaysBehind = startDay.plusHours(20);
-        log.info("LIMIT_DATE: {}", sixtyDaysBehind);
-        return transactionService.findByTransactionDateBetween(startDay, sixtyDaysBehind)
-                .reduce((first, last) -> last)
+        return resolveZone(request)
+                .flatMap(zoneId -> dayRange(request, zoneId))
+                .flatMap(day -> transactionService.findTop(day.getT1(), day.getT2(), null, null, TransactionOrder.RECENT, 1).next())
                 .flatMap(t -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
                         .bodyValue(t))
                 .switchIfEmpty(ServerResponse.notFound().build());
     }
 
+    /**
+     * First {@code limit} transactions of the day {@code dateTop} ordered by {@code orderBy}
+     * ({@code recent}, {@code amount} or {@code commission}), optionally filtered by
+     * {@code accountNumber} and {@code productName}.
+     */
+    public Mono<ServerResponse> transactionTopRanking(ServerRequest request){
+        int maxLimit = properties.getTop().getMaxLimit();
+        String accountNumber = request.queryParam("accountNumber").orElse(null);
+        String productName = request.queryParam("productName").orElse(null);
+        return resolveZone(request)
+                .flatMap(zoneId -> dayRange(request, zoneId))
+                .zipWith(Mono.fromCallable(() -> {
+                    int limit = request.queryParam("limit").map(Integer::parseInt).orElse(properties.getTop().getDefaultLimit());
+                    if (limit < 1 || limit > maxLimit) {
+                        throw new IllegalArgumentException(String.format("The limit must be between 1 and %d", maxLimit));
+                    }
+                    return Tuples.of(TransactionOrder.parse(request.queryParam("orderBy").orElse("recent")), limit);
+                }).onErrorMap(IllegalArgumentException.class, e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e)))
+                .flatMap(query -> transactionsResponse(request, transactionService.findTop(query.getT1().getT1(), query.getT1().getT2(),
+                        accountNumber, productName, query.getT2().getT1(), query.getT2().getT2())));
+    }
+
+    /**
+     * v1 average: days without balance count as 1500, no product name in the response.
+     */
     public Mono<ServerResponse> transactionAverage(ServerRequest request){
-        String month = request.pathVariable("month");
         String accountNumber = request.pathVariable("accountNumber");
-        Mono<AverageDTO> averageDTO = Mono.just(new AverageDTO());
-        //NUMERO DE DIAS POR MES - AÑO
-        YearMonth yearMonthObject = YearMonth.of(2021, Integer.parseInt(month));
-        int daysInMonth = yearMonthObject.lengthOfMonth();
-        ZoneId zoneId = ZoneId.of ( "America/Bogota" );
-        LocalDate today = LocalDate.now ( zoneId );
-        //encuentra primer dia del mes
-        LocalDate firstOfCurrentMonth = today.withDayOfMonth( 1 );
-        //encuentra ULTIMO dia del mes
-        LocalDate endOfCurrentMonth = today.withDayOfMonth( daysInMonth );
-        LocalDate start = LocalDate.parse(firstOfCurrentMonth.toString());
-        LocalDate end = LocalDate.parse(endOfCurrentMonth.toString());
-        List<LocalDate> totalDates = new ArrayList<>();
-        while (!start.isAfter(end)) {
-            totalDates.add(start);
-            start = start.plusDays(1);
-        }
-        return averageDTO.flatMap(averageDTO1 -> {
-            List<Double> balances = new ArrayList<>();
-            double acc =  0.0;
-            for (LocalDate date: totalDates){
-                LocalDateTime startDay =  date.atStartOfDay();
-                LocalDateTime endDay = startDay.plusHours(20);
-                List<Transaction> transaction = transactionService.findByTransactionDateBetween(startDay, endDay).filter(transactionFilter -> Objects.equals(transactionFilter.getBill().getAccountNumber(), accountNumber)).takeLast(1).collectList().toProcessor().block();
-
-                for (Transaction transaction1: transaction){
-                    balances.add(transaction1.getBill().getBalance() == 0.0 ? 1500 : transaction1.getBill().getBalance());
-                    acc += transaction1.getBill().getBalance() == 0.0 ? 1500 : transaction1.getBill().getBalance();
-                }
-            }
-            averageDTO1.setBalances(balances);
-            double av = balances.stream()
-                    .mapToDouble(Double::doubleValue)
-                    .average().orElse(0.0);
-            averageDTO1.setAverage(av);
-            return Mono.just(averageDTO1);
-        }).flatMap(t -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+        return monthDailyBalances(request, accountNumber)
+                .map(balance -> balance.isZero() ? EMPTY_ACCOUNT_BALANCE : balance)
+                .collectList()
+                .map(balances -> {
+                    AverageDTO averageDTO = new AverageDTO();
+                    averageDTO.setBalances(balances);
+                    averageDTO.setAverage(average(balances));
+                    return averageDTO;
+                })
+                .flatMap(t -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(t));
     }
 
     public Mono<ServerResponse> transactionAverageV2(ServerRequest request){
-        String month = request.pathVariable("month");
         String accountNumber = request.pathVariable("accountNumber");
-        Mono<AverageDTO> averageDTO = Mono.just(new AverageDTO());
-
-        YearMonth yearMonthObject = YearMonth.of(2021, Integer.parseInt(month));
-        int daysInMonth = yearMonthObject.lengthOfMonth();
-        ZoneId zoneId = ZoneId.of ( "America/Bogota" );
-        LocalDate today = LocalDate.now ( zoneId );
-        LocalDate firstOfCurrentMonth = today.withDayOfMonth( 1 );
-
-        LocalDate endOfCurrentMonth = today.withDayOfMonth( daysInMonth );
-        LocalDate start = LocalDate.parse(firstOfCurrentMonth.toString());
-        LocalDate end = LocalDate.parse(endOfCurrentMonth.toString());
-        List<LocalDate> totalDates = new ArrayList<>();
-        while (!start.isAfter(end)) {
-            totalDates.add(start);
-            start = start.plusDays(1);
-        }
-
-        Mono<List<Transaction>> transactionFlux = Flux.fromIterable(totalDates).flatMapSequential(daysInMonthByYear -> {
-            LocalDateTime startDay =  daysInMonthByYear.atStartOfDay();
-            LocalDateTime endDay = startDay.plusHours(20);
-           return transactionService.findByTransactionDateBetween(startDay, endDay).filter(transactionFilter -> Objects.equals(transactionFilter.getBill().getAccountNumber(), accountNumber)).takeLast(1);
-        }).collectList();
+        Mono<List<Money>> balances = monthDailyBalances(request, accountNumber).collectList();
 
         Mono<Acquisition> acquisitionMono = acquisitionService.findByBillAccountNumber(accountNumber);
 
-        return Flux.zip(averageDTO, transactionFlux, acquisitionMono)
-                .flatMapSequential(result -> {
-                    List<Double> totalBalance = result.getT2().stream()
-                            .map(ts -> ts.getBill().getBalance())
-                            .collect(Collectors.toList());
-                    result.getT1().setBalances(totalBalance);
-            return Flux.just(result);
-        }).zipWith(averageDTO, (x, y) ->{
-            String productName = x.getT3().getProduct().getProductName();
-            y.setProductName(productName);
-            double av = x.getT1().getBalances().stream()
-                    .mapToDouble(Double::doubleValue)
-                    .average()
-                    .orElse(0.0);
-            y.setAverage(av);
-            return y;
-        })
-                .last()
-                .log()
+        return Mono.zip(balances, acquisitionMono)
+                .map(result -> {
+                    AverageDTO averageDTO = new AverageDTO();
+                    averageDTO.setBalances(result.getT1());
+                    averageDTO.setProductName(result.getT2().getProduct().getProductName());
+                    averageDTO.setAverage(average(result.getT1()));
+                    return averageDTO;
+                })
                 .flatMap(t -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(t));
     }
 
+    /**
+     * Rebuilds the daily balance view for {@code [from, to)}, both {@code yyyy-MM-dd} query parameters.
+     */
+    public Mono<ServerResponse> backfillDailyBalance(ServerRequest request){
+        int maxDays = properties.getDailyBalance().getMaxBackfillDays();
+        return Mono.fromCallable(() -> {
+                    LocalDate from = LocalDate.parse(request.queryParam("from").orElseThrow(() -> new IllegalArgumentException("from is required")));
+                    LocalDate to = LocalDate.parse(request.queryParam("to").orElseThrow(() -> new IllegalArgumentException("to is required")));
+                    if (!from.isBefore(to) || from.plusDays(maxDays).isBefore(to)) {
+                        throw new IllegalArgumentException(String.format("The range must hold between 1 and %d days", maxDays));
+                    }
+                    return Tuples.of(from, to);
+                })
+                .onErrorMap(e -> e instanceof IllegalArgumentException || e instanceof DateTimeException,
+                        e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e))
+                .flatMap(range -> dailyBalanceService.backfill(range.getT1(), range.getT2()))
+                .flatMap(snapshots -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Collections.singletonMap("snapshots", snapshots)));
+    }
+
+    /**
+     * Rewrites the transactions stored with the whole bill graph into the compact storage.
+     */
+    public Mono<ServerResponse> migrateStorage(ServerRequest request){
+        return billSnapshotService.migrate()
+                .flatMap(migrated -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Collections.singletonMap("migrated", migrated)));
+    }
+
+    /**
+     * Transactions between 2021-08-12 and {@code periodDay} days after it, rejected when the range is longer than
+     * {@code transaction.report.max-between-days}.
+     */
     public  Mono<ServerResponse> transactionBetweenDates(ServerRequest request){
-        String periodDay = request.pathVariable("periodDay");
+        int maxDays = properties.getReport().getMaxBetweenDays();
         LocalDate aDate = LocalDate.of(2021, 8, 12);
-        LocalDate sixtyDaysBehind = aDate.plusDays(Integer.parseInt(periodDay));
-        log.info("LIMIT_DATE: {}", sixtyDaysBehind);
-        return transactionService.findByTransactionDateBetween(aDate.atStartOfDay(), sixtyDaysBehind.atStartOfDay())
-                .collectList()
+        return Mono.fromCallable(() -> {
+                    int periodDay = Integer.parseInt(request.pathVariable("periodDay"));
+                    if (Math.abs(periodDay) > maxDays) {
+                        throw new IllegalArgumentException(String.format("The period must be between -%1$d and %1$d days", maxDays));
+                    }
+                    return aDate.plusDays(periodDay);
+                })
+                .onErrorMap(IllegalArgumentException.class, e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e))
+                .doOnNext(sixtyDaysBehind -> log.info("LIMIT_DATE: {}", sixtyDaysBehind))
+                .flatMap(sixtyDaysBehind -> transactionsResponse(request,
+                        transactionService.findByTransactionDateBetween(aDate.atStartOfDay(), sixtyDaysBehind.atStartOfDay())));
+    }
+
+    /**
+     * Streams the transactions straight from the Mongo cursor when the client accepts NDJSON or
+     * Server-Sent Events; any other client keeps receiving a single JSON array.
+     */
+    private Mono<ServerResponse> transactionsResponse(ServerRequest request, Flux<Transaction> transactions){
+        Optional<MediaType> streaming = streamingType(request);
+        if (streaming.isPresent()) {
+            return ServerResponse.ok().contentType(streaming.get()).body(transactions, Transaction.class);
+        }
+        return transactions.collectList()
                 .flatMap(t -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
                         .bodyValue(t))
                 .switchIfEmpty(ServerResponse.notFound().build());
     }
 
+    private static Optional<MediaType> streamingType(ServerRequest request){
+        for (MediaType accepted : request.headers().accept()) {
+            for (MediaType streaming : STREAMING_MEDIA_TYPES) {
+                if (streaming.equalsTypeAndSubtype(accepted)) {
+                    return Optional.of(streaming);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The history is queried with {@code limit + 1} elements; the extra one only tells that a next page exists.
+     */
+    private static TransactionPageDTO toPage(List<Transaction> transactions, int limit){
+        if (transactions.size() <= limit) {
+            return new TransactionPageDTO(transactions, null);
+        }
+        List<Transaction> content = transactions.subList(0, limit);
+        return new TransactionPageDTO(content, TransactionCursor.of(content.get(limit - 1)).toString());
+    }
+
+    /**
+     * Range {@code [dateInit, dateInit + period)} of the report, rejected when the period is longer
+     * than {@code transaction.report.max-period-days}.
+     */
+    private Mono<Tuple2<LocalDateTime, LocalDateTime>> reportRange(ServerRequest request, ZoneId zoneId){
+        int maxPeriodDays = properties.getReport().getMaxPeriodDays();
+        return Mono.fromCallable(() -> {
+                    LocalDate startDay = LocalDate.parse(request.pathVariable("dateInit"));
+                    int period = Integer.parseInt(request.pathVariable("period"));
+                    if (period < 1 || period > maxPeriodDays) {
+                        throw new IllegalArgumentException(String.format("The period must be between 1 and %d days", maxPeriodDays));
+                    }
+                    return Tuples.of(toStorageTime(startDay, zoneId), toStorageTime(startDay.plusDays(period), zoneId));
+                })
+                .onErrorMap(e -> e instanceof IllegalArgumentException || e instanceof DateTimeException,
+                        e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    private Mono<Tuple2<LocalDateTime, LocalDateTime>> dayRange(ServerRequest request, ZoneId zoneId){
+        return Mono.fromCallable(() -> {
+                    LocalDate day = LocalDate.parse(request.pathVariable("dateTop"));
+                    return Tuples.of(toStorageTime(day, zoneId), toStorageTime(day.plusDays(1), zoneId));
+                })
+                .onErrorMap(DateTimeException.class, e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    /**
+     * End-of-day balances of the account for the {@code month} path variable, read from the daily balance
+     * view when it covers every day of the month, otherwise aggregated from the transactions.
+     */
+    private Flux<Money> monthDailyBalances(ServerRequest request, String accountNumber){
+        return resolveZone(request)
+                .flatMap(zoneId -> Mono.fromCallable(() -> YearMonth.of(resolveYear(request, zoneId), Integer.parseInt(request.pathVariable("month"))))
+                        .onErrorMap(e -> e instanceof IllegalArgumentException || e instanceof DateTimeException,
+                                e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e))
+                        .map(yearMonth -> Tuples.of(zoneId, yearMonth)))
+                .flatMapMany(month -> {
+                    ZoneId zoneId = month.getT1();
+                    YearMonth yearMonth = month.getT2();
+                    LocalDateTime from = toStorageTime(yearMonth.atDay(1), zoneId);
+                    LocalDateTime to = toStorageTime(yearMonth.plusMonths(1).atDay(1), zoneId);
+                    return dailyBalanceService.findDailyBalances(accountNumber, yearMonth, zoneId)
+                            .switchIfEmpty(transactionService.findDailyLastBalance(accountNumber, from, to, zoneId));
+                })
+                .map(DailyBalanceDTO::getBalance)
+                .filter(Objects::nonNull);
+    }
+
+    private static Money average(List<Money> balances){
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+        for (Money balance : balances) {
+            accumulator.add(balance);
+        }
+        return accumulator.average();
+    }
+
+    /**
+     * The {@code zone} query parameter or {@code transaction.zone-id}; an unknown zone is a bad request.
+     */
+    private Mono<ZoneId> resolveZone(ServerRequest request){
+        return Mono.fromCallable(() -> ZoneId.of(request.queryParam("zone").orElse(properties.getZoneId())))
+                .onErrorMap(DateTimeException.class, e -> new MethodArgumentNotValid(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    private int resolveYear(ServerRequest request, ZoneId zoneId){
+        return request.queryParam("year")
+                .map(Integer::parseInt)
+                .orElseGet(() -> properties.getAverage().getYear() != null
+                        ? properties.getAverage().getYear()
+                        : Year.now(zoneId).getValue());
+    }
+
+    /**
+     * Transaction dates are persisted as {@link LocalDateTime} in the JVM default zone, so the
+     * start of a calendar day in {@code zoneId} has to be translated before querying.
+     */
+    private static LocalDateTime toStorageTime(LocalDate date, ZoneId zoneId){
+        return date.atStartOfDay(zoneId).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
     private Mono<ServerResponse> errorHandler(Mono<ServerResponse> response){
         return response.onErrorResume(error -> {
+            if (!(error instanceof WebClientResponseException)) {
+                return Mono.error(error);
+            }
             WebClientResponseException errorResponse = (WebClientResponseException) error;
             if(errorResponse.getStatusCode() == HttpStatus.NOT_FOUND) {
                 Map<String, Object> body = new HashMap<>();
@@ -1,5 +1,6 @@
 package com.example.mstransaction.models.dto;
 
+import com.example.mstransaction.models.entities.Money;
 import com.example.mstransaction.models.entities.Transaction;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
@@ -10,8 +11,8 @@ import java.util.List;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 public class AverageDTO {
-    private List<Double> balances;
-    private Double average;
+    private List<Money> balances;
+    private Money average;
     private String productName;
     private String customerIdentityType;
 }
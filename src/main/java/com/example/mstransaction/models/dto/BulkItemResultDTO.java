@@ -0,0 +1,27 @@
+package com.example.mstransaction.models.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one movement of a bulk ingestion. {@code index} is the position of the movement in the request body.
+ * An {@link #UNSETTLED} movement is stored, but the bill or the balances stored with the movements of its account
+ * could not be brought in line with it; {@code error} says which.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkItemResultDTO {
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+    public static final String UNSETTLED = "UNSETTLED";
+
+    private long index;
+    private String accountNumber;
+    private String id;
+    private String status;
+    private String error;
+}
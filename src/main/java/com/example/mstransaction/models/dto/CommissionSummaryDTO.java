@@ -0,0 +1,23 @@
+package com.example.mstransaction.models.dto;
+
+import com.example.mstransaction.models.entities.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Commission and amount totals of a product for one calendar day ({@code yyyy-MM-dd}).
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class CommissionSummaryDTO {
+    @Id
+    private String day;
+    private Long count;
+    private Money commissionTotal;
+    private Money commissionMin;
+    private Money commissionMax;
+    private Money amountTotal;
+    private Money amountMin;
+    private Money amountMax;
+}
@@ -0,0 +1,18 @@
+package com.example.mstransaction.models.dto;
+
+import com.example.mstransaction.models.entities.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Last known balance of an account for a calendar day, as produced by the
+ * daily balance aggregation. {@code day} is formatted as {@code yyyy-MM-dd}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class DailyBalanceDTO {
+    @Id
+    private String day;
+    private Money balance;
+}
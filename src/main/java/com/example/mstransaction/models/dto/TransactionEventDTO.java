@@ -0,0 +1,20 @@
+package com.example.mstransaction.models.dto;
+
+import com.example.mstransaction.models.entities.Transaction;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One created transaction of the live feed. {@code resumeToken} is the value for the {@code resumeAfter} parameter
+ * that continues the feed right after this transaction.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionEventDTO {
+    private String resumeToken;
+    private Transaction transaction;
+}
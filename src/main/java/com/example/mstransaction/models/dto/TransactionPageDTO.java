@@ -0,0 +1,19 @@
+package com.example.mstransaction.models.dto;
+
+import com.example.mstransaction.models.entities.Transaction;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPageDTO {
+    private List<Transaction> content;
+    /** Value for the {@code after} parameter of the next page, absent on the last page. */
+    private String next;
+}
@@ -0,0 +1,42 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the archive job over the {@code transaction} collection: the last transaction copied to a bucket, in
+ * {@code transactionDate, _id} order, and the lease of the instance running the job. The transactions up to the last
+ * one are in their buckets, though they may not be deleted from the live collection yet.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "archive_checkpoint")
+@Data
+public class ArchiveCheckpoint {
+    /** Id of the checkpoint of the {@code transaction} collection. */
+    public static final String TRANSACTION = "transaction";
+
+    @Id
+    private String id;
+
+    @Field(name = "lastTransactionDate")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastTransactionDate;
+
+    @Field(name = "lastId")
+    private Object lastId;
+
+    @Field(name = "archived")
+    private Long archived;
+
+    @Field(name = "owner")
+    private String owner;
+
+    @Field(name = "lockedUntil")
+    private LocalDateTime lockedUntil;
+}
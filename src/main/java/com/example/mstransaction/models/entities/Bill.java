@@ -24,7 +24,7 @@ public class Bill {
     private String accountNumber;
 
     @Field(name = "balance")
-    private Double balance;
+    private Money balance;
 
     @Field(name = "acquisition")
     private Acquisition acquisition;
@@ -0,0 +1,26 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * Bill, acquisition, product, rules and customers as they were when a transaction was created, without the balance.
+ * The id is the SHA-256 of the stored content, so transactions created over the same state share one snapshot.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "bill_snapshot")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BillSnapshot {
+    @Id
+    private String id;
+
+    @Field(name = "account")
+    private Bill bill;
+}
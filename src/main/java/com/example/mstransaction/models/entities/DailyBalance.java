@@ -0,0 +1,37 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * End-of-day balance of an account, maintained as transactions are created. The id is
+ * {@code <accountNumber>:<yyyy-MM-dd>}; days are calendar days in {@code transaction.zone-id}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "daily_balance")
+@CompoundIndex(name = "account_day_idx", def = "{'accountNumber': 1, 'date': 1}", unique = true)
+@Data
+public class DailyBalance {
+    @Id
+    private String id;
+
+    @Field(name = "accountNumber")
+    private String accountNumber;
+
+    @Field(name = "date")
+    private String date;
+
+    @Field(name = "balance")
+    private Money balance;
+
+    @Field(name = "lastTransactionDate")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastTransactionDate;
+}
@@ -0,0 +1,22 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * First day ({@code yyyy-MM-dd}) from which the {@code daily_balance} view holds every day of every account, one
+ * document per zone the view is kept in; the id is the zone id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "daily_balance_coverage")
+@Data
+public class DailyBalanceCoverage {
+    @Id
+    private String id;
+
+    @Field(name = "coveredFrom")
+    private String coveredFrom;
+}
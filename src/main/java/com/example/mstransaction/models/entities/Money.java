@@ -0,0 +1,196 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Exact amount of money: a count of minor units (cents) of a currency. Amounts with more decimals than the currency
+ * has are rounded half-even.
+ * In JSON it is a plain number in major units ({@code 12.50}), so clients and the downstream services see the same
+ * shape as the former {@code Double} fields; strings are accepted too. In Mongo it is stored as a {@code Decimal128}
+ * in major units and read from any stored number, so documents written with doubles stay readable
+ * (see {@code MongoConversionsConfig}). Neither form carries the currency: it is {@link #DEFAULT_CURRENCY}.
+ * Amounts whose minor units do not fit in a {@code long} fail with an {@link ArithmeticException}; in JSON they are
+ * an invalid value of the field.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money> {
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("PEN");
+    private static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money zero() {
+        return ZERO;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return ofMinor(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    public static Money of(BigDecimal amount) {
+        return of(amount, DEFAULT_CURRENCY);
+    }
+
+    public static Money of(BigDecimal amount, Currency currency) {
+        return new Money(amount.setScale(currency.getDefaultFractionDigits(), RoundingMode.HALF_EVEN)
+                .unscaledValue().longValueExact(), currency);
+    }
+
+    /**
+     * Reads the double through its shortest decimal form, so {@code 0.1} is 10 cents and not 0.1000000000000000055.
+     */
+    public static Money of(double amount) {
+        return of(BigDecimal.valueOf(amount));
+    }
+
+    /**
+     * @return {@code null} for {@code null}, as the nullable fields this type replaces
+     */
+    public static Money of(Number amount) {
+        if (amount == null) {
+            return null;
+        }
+        if (amount instanceof Decimal128) {
+            return of(((Decimal128) amount).bigDecimalValue());
+        }
+        if (amount instanceof BigDecimal) {
+            return of((BigDecimal) amount);
+        }
+        if (amount instanceof Long || amount instanceof Integer || amount instanceof Short || amount instanceof Byte) {
+            return of(BigDecimal.valueOf(amount.longValue()));
+        }
+        return of(amount.doubleValue());
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    public Decimal128 toDecimal128() {
+        return new Decimal128(toBigDecimal());
+    }
+
+    public static Money min(Money a, Money b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    public static Money max(Money a, Money b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException(String.format("Cannot combine %s with %s", currency, other.currency));
+        }
+    }
+
+    public static final class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(value.toBigDecimal());
+        }
+    }
+
+    public static final class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                BigDecimal amount = parser.getDecimalValue();
+                try {
+                    return of(amount);
+                } catch (ArithmeticException e) {
+                    return (Money) context.handleWeirdNumberValue(Money.class, amount, "out of the range of an amount");
+                }
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return of(new BigDecimal(text));
+                } catch (NumberFormatException e) {
+                    return (Money) context.handleWeirdStringValue(Money.class, text, "not a decimal amount");
+                } catch (ArithmeticException e) {
+                    return (Money) context.handleWeirdStringValue(Money.class, text, "out of the range of an amount");
+                }
+            }
+            return (Money) context.handleUnexpectedToken(Money.class, parser);
+        }
+    }
+}
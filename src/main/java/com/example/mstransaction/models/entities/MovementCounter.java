@@ -0,0 +1,29 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * Movements of an account in a calendar month. The id is {@code <accountNumber>:<yyyy-MM>}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "movement_counter")
+@CompoundIndex(name = "account_period_idx", def = "{'accountNumber': 1, 'period': 1}")
+@Data
+public class MovementCounter {
+    @Id
+    private String id;
+
+    @Field(name = "accountNumber")
+    private String accountNumber;
+
+    @Field(name = "period")
+    private String period;
+
+    @Field(name = "count")
+    private Long count;
+}
@@ -5,6 +5,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -13,6 +16,10 @@ import java.time.LocalDateTime;
 //@JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Document(collection = "transaction")
+@CompoundIndexes({
+        @CompoundIndex(name = "account_date_idx", def = "{'account.accountNumber': 1, 'transactionDate': 1, '_id': 1}"),
+        @CompoundIndex(name = "product_date_idx", def = "{'account.acquisition.product.productName': 1, 'transactionDate': 1}")
+})
 @Data
 public class Transaction {
     @Id
@@ -22,17 +29,25 @@ public class Transaction {
     private String transactionType;
 
     @Field(name = "transactionAmount")
-    private Double transactionAmount;
+    private Money transactionAmount;
 
     @Field(name = "commission")
-    private Double commission;
+    private Money commission;
 
+    /**
+     * Compact copy of the account: number, balance after the transaction, IBAN and product name. The rest of the
+     * graph is in the {@link BillSnapshot} {@link #snapshotId}.
+     */
     @Field(name = "account")
     private Bill bill;
 
+    @Field(name = "snapshotId")
+    private String snapshotId;
+
     @Field(name = "description")
     private String description;
 
+    @Indexed(name = "transaction_date_idx")
     @Field(name = "transactionDate")
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime transactionDate = LocalDateTime.now();
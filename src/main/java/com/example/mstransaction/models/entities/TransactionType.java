@@ -0,0 +1,48 @@
+package com.example.mstransaction.models.entities;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * What a movement does to the balance of its account; {@link Transaction#getTransactionType()} holds the name, in any
+ * case. The API also accepts types it does not know, see {@link #balanceAfter}.
+ */
+public enum TransactionType {
+    DEPOSIT {
+        @Override
+        public Money applyTo(Money balance, Money amount) {
+            return balance.plus(amount);
+        }
+    },
+    RETIRE {
+        @Override
+        public Money applyTo(Money balance, Money amount) {
+            return balance.minus(amount);
+        }
+    };
+
+    /**
+     * Balance of the account after a movement of {@code amount}, before its commission.
+     */
+    public abstract Money applyTo(Money balance, Money amount);
+
+    /**
+     * Balance of the account after a movement of {@code transactionType}, before its commission. A known type moves
+     * {@code stored} by {@code amount}. Any other type keeps the contract the API had before the types were known:
+     * the balance is the one the client sent, or {@code stored} when it sent none.
+     */
+    public static Money balanceAfter(String transactionType, Money stored, Money amount, Money requested) {
+        Optional<TransactionType> type = of(transactionType);
+        if (type.isPresent()) {
+            return type.get().applyTo(stored, amount);
+        }
+        return requested == null ? stored : requested;
+    }
+
+    public static Optional<TransactionType> of(String name) {
+        return name == null ? Optional.empty() : Arrays.stream(values())
+                .filter(type -> type.name().equals(name.trim().toUpperCase(Locale.ROOT)))
+                .findFirst();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.mstransaction.repositories;
+
+import com.example.mstransaction.models.entities.DailyBalance;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.Query;
+import reactor.core.publisher.Flux;
+
+public interface IDailyBalanceRepository extends IRepository<DailyBalance, String> {
+    @Meta(comment = "findByAccountNumberInRange")
+    @Query(value = "{ accountNumber: ?0, date: { $gte: ?1, $lt: ?2 } }", sort = "{ date: 1 }")
+    Flux<DailyBalance> findByAccountNumberInRange(String accountNumber, String from, String to);
+}
@@ -1,14 +1,17 @@
 package com.example.mstransaction.repositories;
 
 import com.example.mstransaction.models.entities.Transaction;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
-import java.time.LocalDateTime;
-import java.util.List;
-
-public interface ITransactionRepository extends IRepository<Transaction, String>{
-    Mono<List<Transaction>> findAllByBill_AccountNumber(String accountNumber);
-    Flux<Transaction> findByTransactionDateBetween(LocalDateTime from, LocalDateTime to);
-    Flux<Transaction> findByBill_Acquisition_Product_ProductName(String productName);
-}
\ No newline at end of file
+/**
+ * Writes of new transactions to the live collection. The queries, which also read the archive buckets, are run by
+ * {@link TransactionQueryRouter}; they carry their name as comment so the Mongo command metrics can tell them apart,
+ * and the list queries read through {@link #COMPACT_FIELDS}, documents stored before the compact storage included.
+ */
+public interface ITransactionRepository extends IRepository<Transaction, String>, ITransactionRepositoryCustom {
+    /**
+     * Fields of the compact storage, see {@code BillSnapshotService}.
+     */
+    String COMPACT_FIELDS = "{ transactionType: 1, transactionAmount: 1, commission: 1, description: 1, transactionDate: 1, "
+            + "snapshotId: 1, 'account.accountNumber': 1, 'account.balance': 1, 'account.acquisition.iban': 1, "
+            + "'account.acquisition.product.productName': 1 }";
+}
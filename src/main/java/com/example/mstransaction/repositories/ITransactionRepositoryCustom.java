@@ -0,0 +1,23 @@
+package com.example.mstransaction.repositories;
+
+import com.example.mstransaction.models.entities.Transaction;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ITransactionRepositoryCustom {
+    /**
+     * Inserts the transactions with one unordered {@code insertMany}: a failing document does not stop the others.
+     * Transactions without id get one before the insert.
+     *
+     * @return error message by position in {@code transactions} of every document that was not inserted
+     */
+    Mono<Map<Integer, String>> insertUnordered(List<Transaction> transactions);
+
+    /**
+     * Rewrites the commission and the balance after the transaction of stored transactions, by id, with one
+     * unordered bulk write.
+     */
+    Mono<Void> updateBalances(List<Transaction> transactions);
+}
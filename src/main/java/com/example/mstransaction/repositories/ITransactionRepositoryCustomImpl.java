@@ -0,0 +1,65 @@
+package com.example.mstransaction.repositories;
+
+import com.example.mstransaction.models.entities.Transaction;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ITransactionRepositoryCustomImpl implements ITransactionRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ITransactionRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        List<Document> documents = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (transaction.getId() == null) {
+                transaction.setId(new ObjectId().toHexString());
+            }
+            Document document = new Document();
+            mongoTemplate.getConverter().write(transaction, document);
+            documents.add(document);
+        }
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(result -> Collections.<Integer, String>emptyMap())
+                .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(e.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))));
+    }
+
+    @Override
+    public Mono<Void> updateBalances(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> updates = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            updates.add(new UpdateOneModel<>(
+                    new Document("_id", ObjectId.isValid(transaction.getId()) ? new ObjectId(transaction.getId()) : transaction.getId()),
+                    new Document("$set", new Document("commission", mongoTemplate.getConverter().convertToMongoType(transaction.getCommission()))
+                            .append("account.balance", mongoTemplate.getConverter().convertToMongoType(transaction.getBill().getBalance())))));
+        }
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(updates, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+}
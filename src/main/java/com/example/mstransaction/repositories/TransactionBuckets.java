@@ -0,0 +1,125 @@
+package com.example.mstransaction.repositories;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.entities.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The monthly archive buckets {@code transaction_yyyy_MM} of the {@code transaction} collection. A transaction goes
+ * to the bucket of the month of its {@code transactionDate}, as stored (JVM default zone). Buckets get the indexes
+ * declared on {@link Transaction} when they are created. The known buckets are read from the database every
+ * {@code transaction.archive.bucket-refresh}, so the ones another instance created show up without a restart; the
+ * first query waits for the first read.
+ */
+@Component
+@Slf4j(topic = "TRANSACTION_BUCKETS")
+public class TransactionBuckets {
+    private static final String PREFIX = "transaction_";
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final long refreshNanos;
+    private final NavigableMap<YearMonth, String> buckets = new ConcurrentSkipListMap<>();
+    private final Mono<Void> loaded;
+    private volatile long nextRefresh;
+
+    @Autowired
+    public TransactionBuckets(ReactiveMongoTemplate mongoTemplate, MongoMappingContext mappingContext, TransactionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.mappingContext = mappingContext;
+        this.refreshNanos = properties.getArchive().getBucketRefresh().toNanos();
+        this.nextRefresh = System.nanoTime() + refreshNanos;
+        this.loaded = load().cache();
+    }
+
+    public String live() {
+        return mongoTemplate.getCollectionName(Transaction.class);
+    }
+
+    public static String bucketOf(YearMonth month) {
+        return PREFIX + MONTH.format(month);
+    }
+
+    /**
+     * The live collection followed by the buckets of the months overlapping {@code [from, to)}; a {@code null} bound
+     * leaves that side open.
+     */
+    public Mono<List<String>> overlapping(LocalDateTime from, LocalDateTime to) {
+        return loaded.then(Mono.fromSupplier(() -> {
+            refreshIfStale();
+            List<String> collections = new ArrayList<>();
+            collections.add(live());
+            for (Map.Entry<YearMonth, String> bucket : buckets.entrySet()) {
+                LocalDateTime start = bucket.getKey().atDay(1).atStartOfDay();
+                LocalDateTime end = bucket.getKey().plusMonths(1).atDay(1).atStartOfDay();
+                if ((to == null || start.isBefore(to)) && (from == null || end.isAfter(from))) {
+                    collections.add(bucket.getValue());
+                }
+            }
+            return collections;
+        }));
+    }
+
+    /**
+     * Creates the bucket of {@code month} with its indexes the first time it is needed.
+     */
+    public Mono<String> ensure(YearMonth month) {
+        String name = bucketOf(month);
+        if (buckets.containsKey(month)) {
+            return Mono.just(name);
+        }
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        ReactiveIndexOperations indexOperations = mongoTemplate.indexOps(name);
+        return Flux.fromIterable(resolver.resolveIndexFor(Transaction.class))
+                .concatMap(indexOperations::ensureIndex)
+                .then(Mono.fromSupplier(() -> {
+                    buckets.put(month, name);
+                    log.info("BUCKET_READY: {}", name);
+                    return name;
+                }));
+    }
+
+    private void refreshIfStale() {
+        long now = System.nanoTime();
+        if (now - nextRefresh >= 0) {
+            nextRefresh = now + refreshNanos;
+            load().subscribe();
+        }
+    }
+
+    private Mono<Void> load() {
+        return mongoTemplate.getCollectionNames()
+                .filter(name -> name.startsWith(PREFIX))
+                .doOnNext(name -> {
+                    try {
+                        buckets.putIfAbsent(YearMonth.parse(name.substring(PREFIX.length()), MONTH), name);
+                    } catch (DateTimeParseException e) {
+                        // not a bucket, e.g. a collection named transaction_<something> by hand
+                    }
+                })
+                .onErrorResume(error -> {
+                    log.warn("BUCKET_REFRESH_FAILED: {}", error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
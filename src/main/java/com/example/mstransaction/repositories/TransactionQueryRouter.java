@@ -0,0 +1,301 @@
+package com.example.mstransaction.repositories;
+
+import com.example.mstransaction.models.dto.CommissionSummaryDTO;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
+import com.example.mstransaction.models.entities.ArchiveCheckpoint;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.utils.RangeSplitter;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Runs the date-ranged transaction queries over the live collection and the archive buckets of
+ * {@link TransactionBuckets} that overlap the range, and merges the results in the order of the query. Every source is
+ * sorted and limited on its own, so a merged page never reads more than {@code limit} documents per source. A
+ * transaction being archived can briefly be in the live collection and in its bucket; the copies are next to each
+ * other in the merge, which keeps the first. Queries read the compact fields and carry their name as comment, like
+ * the {@link ITransactionRepository} methods.
+ * Whole-range reads and aggregates are cut into date slices by the {@link RangeSplitter}, every slice being a routed
+ * query of its own. The id of a transaction does not tell its bucket, so reads, updates and deletes by id go to every
+ * collection.
+ */
+@Component
+public class TransactionQueryRouter {
+    private static final Set<String> COMPACT_FIELDS = Document.parse(ITransactionRepository.COMPACT_FIELDS).keySet();
+    private static final Comparator<Object> NULLS_FIRST = Comparator.nullsFirst((a, b) -> compare(a, b));
+    private static final Sort ASCENDING_DATE = Sort.by(Sort.Direction.ASC, "transactionDate", "id");
+    private static final String DATE = "transactionDate";
+    private static final ProjectionOperation BALANCE = Aggregation.project(DATE).and("account.balance").as("balance");
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionBuckets buckets;
+    private final RangeSplitter splitter;
+
+    @Autowired
+    public TransactionQueryRouter(ReactiveMongoTemplate mongoTemplate, TransactionBuckets buckets, RangeSplitter splitter) {
+        this.mongoTemplate = mongoTemplate;
+        this.buckets = buckets;
+        this.splitter = splitter;
+    }
+
+    /**
+     * @param from  start of the {@code transactionDate} range of {@code criteria}, used to pick the buckets; {@code null} when open
+     * @param to    end (exclusive) of the range, {@code null} when open
+     * @param sort  must end with {@code id} so the merge is total
+     * @param limit 0 for no limit
+     */
+    public Flux<Transaction> find(String comment, Criteria criteria, LocalDateTime from, LocalDateTime to, Sort sort, int limit) {
+        Comparator<Transaction> order = comparator(sort);
+        return buckets.overlapping(from, to).flatMapMany(collections -> {
+            Flux<Transaction> merged = Flux.mergeComparing(order, sources(collections, comment, criteria, sort, limit))
+                    .distinctUntilChanged(Transaction::getId);
+            return limit > 0 ? merged.take(limit) : merged;
+        });
+    }
+
+    /**
+     * Every transaction matching {@code filter} in the range, sorted by date ascending. The slices are queried
+     * concurrently and emitted in order.
+     *
+     * @param filter        criteria on other fields than {@code transactionDate}, {@code null} for none
+     * @param fromInclusive whether a transaction dated exactly {@code from} is part of the range
+     */
+    public Flux<Transaction> findInRange(String comment, Criteria filter, LocalDateTime from, boolean fromInclusive, LocalDateTime to) {
+        return splitter.ordered(comment, from, to, (start, end) -> {
+            Criteria date = start.equals(from) && !fromInclusive
+                    ? Criteria.where(DATE).gt(start).lt(end)
+                    : Criteria.where(DATE).gte(start).lt(end);
+            return find(comment, filter == null ? date : new Criteria().andOperator(filter, date), start, end, ASCENDING_DATE, 0);
+        });
+    }
+
+    /**
+     * Commission and amount totals per calendar day in {@code zoneId} of the transactions matching {@code filter} in
+     * {@code [from, to)}. Every slice is aggregated on its own in every collection it overlaps; the partial totals of
+     * a day are combined. The collections are split at the {@link ArchiveCheckpoint}, so a transaction that is in its
+     * bucket and not yet deleted from the live collection is counted once.
+     */
+    public Flux<CommissionSummaryDTO> summarizeCommission(Criteria filter, LocalDateTime from, LocalDateTime to, ZoneId zoneId) {
+        return mongoTemplate.findById(ArchiveCheckpoint.TRANSACTION, ArchiveCheckpoint.class)
+                .defaultIfEmpty(new ArchiveCheckpoint())
+                .flatMapMany(checkpoint -> splitter.unordered("summarizeCommissionByProduct", from, to, (start, end) -> buckets.overlapping(start, end)
+                        .flatMapMany(Flux::fromIterable)
+                        .filter(collection -> collection.equals(buckets.live()) || checkpoint.getLastTransactionDate() != null)
+                        .flatMap(collection -> mongoTemplate.aggregate(
+                                summary(new Criteria().andOperator(filter, Criteria.where(DATE).gte(start).lt(end), tier(collection, checkpoint)), zoneId),
+                                collection, CommissionSummaryDTO.class))))
+                .collect(TreeMap<String, CommissionSummaryDTO>::new, (days, summary) -> days.merge(summary.getDay(), summary, TransactionQueryRouter::combine))
+                .flatMapIterable(TreeMap::values);
+    }
+
+    /**
+     * The transactions of {@code collection} that belong to it: in the live collection the ones after the checkpoint,
+     * in a bucket the ones up to it. Without a checkpoint every transaction is still live.
+     */
+    private Criteria tier(String collection, ArchiveCheckpoint checkpoint) {
+        LocalDateTime date = checkpoint.getLastTransactionDate();
+        if (date == null) {
+            return new Criteria();
+        }
+        if (collection.equals(buckets.live())) {
+            return new Criteria().orOperator(Criteria.where(DATE).gt(date),
+                    Criteria.where(DATE).is(date).and("_id").gt(checkpoint.getLastId()));
+        }
+        return new Criteria().orOperator(Criteria.where(DATE).lt(date),
+                Criteria.where(DATE).is(date).and("_id").lte(checkpoint.getLastId()));
+    }
+
+    /**
+     * Last balance of the account for every day in {@code [from, to)} that has at least one transaction. Days are
+     * calendar days in {@code zoneId} and come back in ascending order.
+     */
+    public Flux<DailyBalanceDTO> findDailyLastBalance(String accountNumber, LocalDateTime from, LocalDateTime to, ZoneId zoneId) {
+        Criteria criteria = Criteria.where("account.accountNumber").is(accountNumber).and(DATE).gte(from).lt(to);
+        return lastBalances("findDailyLastBalance", criteria, from, to, BALANCE.and(DateOperators.dateOf(DATE)
+                        .withTimezone(DateOperators.Timezone.valueOf(zoneId.getId()))
+                        .toString("%Y-%m-%d")).as("key"))
+                .map(last -> {
+                    DailyBalanceDTO dailyBalance = new DailyBalanceDTO();
+                    dailyBalance.setDay(last.getString("_id"));
+                    dailyBalance.setBalance(Money.of((Number) last.get("balance")));
+                    return dailyBalance;
+                });
+    }
+
+    /**
+     * Balance after the last transaction in {@code [from, to)} of every account that has one, as documents with the
+     * account number as {@code _id}, {@code balance} and {@code lastTransactionDate}.
+     */
+    public Flux<Document> findLastBalancePerAccount(LocalDateTime from, LocalDateTime to) {
+        return lastBalances("findLastBalancePerAccount", Criteria.where(DATE).gte(from).lt(to), from, to,
+                BALANCE.and("account.accountNumber").as("key"));
+    }
+
+    /**
+     * The whole transaction with {@code id}, from the live collection or else from the bucket holding it.
+     */
+    public Mono<Transaction> findById(String id) {
+        Query byId = Query.query(Criteria.where("_id").is(id)).comment("findById");
+        return buckets.overlapping(null, null)
+                .flatMap(collections -> Flux.fromIterable(collections)
+                        .flatMapSequential(collection -> mongoTemplate.findOne(byId, Transaction.class, collection))
+                        .next());
+    }
+
+    /**
+     * Replaces every stored copy of the transaction, so an update made while it is being archived survives in
+     * whichever copy is kept. A transaction stored nowhere is inserted in the live collection.
+     */
+    public Mono<Transaction> save(Transaction transaction) {
+        if (transaction.getId() == null) {
+            return mongoTemplate.save(transaction, buckets.live());
+        }
+        Query byId = Query.query(Criteria.where("_id").is(transaction.getId())).comment("findById");
+        return buckets.overlapping(null, null)
+                .flatMapMany(Flux::fromIterable)
+                .filterWhen(collection -> mongoTemplate.exists(byId, Transaction.class, collection))
+                .collectList()
+                .flatMapMany(holding -> Flux.fromIterable(holding.isEmpty() ? Collections.singletonList(buckets.live()) : holding))
+                .concatMap(collection -> mongoTemplate.save(transaction, collection))
+                .last();
+    }
+
+    /**
+     * Removes every stored copy of the transaction.
+     */
+    public Mono<Void> deleteById(String id) {
+        Query byId = Query.query(Criteria.where("_id").is(id)).comment("deleteById");
+        return buckets.overlapping(null, null)
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(collection -> mongoTemplate.remove(byId, Transaction.class, collection))
+                .then();
+    }
+
+    /**
+     * Balance after the last transaction matching {@code criteria} of every {@code key} of {@code projection}, in the
+     * live collection and the buckets overlapping {@code [from, to)}. A key found in several collections keeps the
+     * balance of its latest transaction; keys come back in order.
+     */
+    private Flux<Document> lastBalances(String comment, Criteria criteria, LocalDateTime from, LocalDateTime to, ProjectionOperation projection) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                        Aggregation.match(criteria),
+                        Aggregation.sort(Sort.Direction.ASC, DATE, "_id"),
+                        projection,
+                        Aggregation.group("key")
+                                .last("balance").as("balance")
+                                .last(DATE).as("lastTransactionDate"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).comment(comment).build());
+        return buckets.overlapping(from, to)
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(collection -> mongoTemplate.aggregate(aggregation, collection, Document.class))
+                .filter(last -> last.get("_id") != null)
+                .collect(TreeMap<String, Document>::new, (groups, last) -> groups.merge(last.get("_id").toString(), last, TransactionQueryRouter::later))
+                .flatMapIterable(TreeMap::values);
+    }
+
+    private static Aggregation summary(Criteria criteria, ZoneId zoneId) {
+        return Aggregation.newAggregation(
+                        Aggregation.match(criteria),
+                        Aggregation.project("commission", "transactionAmount")
+                                .and(DateOperators.dateOf(DATE)
+                                        .withTimezone(DateOperators.Timezone.valueOf(zoneId.getId()))
+                                        .toString("%Y-%m-%d"))
+                                .as("day"),
+                        Aggregation.group("day")
+                                .count().as("count")
+                                .sum("commission").as("commissionTotal")
+                                .min("commission").as("commissionMin")
+                                .max("commission").as("commissionMax")
+                                .sum("transactionAmount").as("amountTotal")
+                                .min("transactionAmount").as("amountMin")
+                                .max("transactionAmount").as("amountMax"))
+                .withOptions(AggregationOptions.builder().comment("summarizeCommissionByProduct").build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Flux<Transaction>[] sources(List<String> collections, String comment, Criteria criteria, Sort sort, int limit) {
+        Flux<Transaction>[] sources = new Flux[collections.size()];
+        for (int i = 0; i < sources.length; i++) {
+            Query query = Query.query(criteria).with(sort).comment(comment);
+            COMPACT_FIELDS.forEach(query.fields()::include);
+            if (limit > 0) {
+                query.limit(limit);
+            }
+            sources[i] = mongoTemplate.find(query, Transaction.class, collections.get(i));
+        }
+        return sources;
+    }
+
+    private static Comparator<Transaction> comparator(Sort sort) {
+        Comparator<Transaction> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Transaction> byProperty = Comparator.comparing(transaction -> property(transaction, order.getProperty()), NULLS_FIRST);
+            comparator = comparator.thenComparing(order.isDescending() ? byProperty.reversed() : byProperty);
+        }
+        return comparator;
+    }
+
+    private static Object property(Transaction transaction, String property) {
+        switch (property) {
+            case "transactionDate":
+                return transaction.getTransactionDate();
+            case "transactionAmount":
+                return transaction.getTransactionAmount();
+            case "commission":
+                return transaction.getCommission();
+            case "id":
+                return transaction.getId();
+            default:
+                throw new IllegalArgumentException("Not a sortable property: " + property);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static Document later(Document a, Document b) {
+        return b.getDate("lastTransactionDate").after(a.getDate("lastTransactionDate")) ? b : a;
+    }
+
+    private static CommissionSummaryDTO combine(CommissionSummaryDTO a, CommissionSummaryDTO b) {
+        CommissionSummaryDTO combined = new CommissionSummaryDTO();
+        combined.setDay(a.getDay());
+        combined.setCount(sum(a.getCount(), b.getCount(), Long::sum));
+        combined.setCommissionTotal(sum(a.getCommissionTotal(), b.getCommissionTotal(), Money::plus));
+        combined.setCommissionMin(sum(a.getCommissionMin(), b.getCommissionMin(), Money::min));
+        combined.setCommissionMax(sum(a.getCommissionMax(), b.getCommissionMax(), Money::max));
+        combined.setAmountTotal(sum(a.getAmountTotal(), b.getAmountTotal(), Money::plus));
+        combined.setAmountMin(sum(a.getAmountMin(), b.getAmountMin(), Money::min));
+        combined.setAmountMax(sum(a.getAmountMax(), b.getAmountMax(), Money::max));
+        return combined;
+    }
+
+    /**
+     * {@code operator} of both values, or the one that is not {@code null}.
+     */
+    private static <T> T sum(T a, T b, BinaryOperator<T> operator) {
+        return a == null ? b : b == null ? a : operator.apply(a, b);
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.mstransaction.services;
 
 import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.utils.DownstreamResilience;
+import com.example.mstransaction.utils.Hedger;
+import com.example.mstransaction.utils.ReactiveLookupCache;
+import com.example.mstransaction.utils.SingleFlight;
+import com.example.mstransaction.utils.TransactionMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -21,63 +27,108 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 @Service
 @Slf4j(topic = "ACQUISITION_WEBCLIENT_SERVICE")
 public class AcquisitionService {
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
+    private final ReactiveLookupCache<String, Acquisition> byAccountNumberCache;
+    private final ReactiveLookupCache<String, Acquisition> byIbanCache;
+    private final SingleFlight<String, Acquisition> byAccountNumberFlight;
+    private final SingleFlight<String, Acquisition> byIbanFlight;
+    private final Hedger byAccountNumberHedger;
+    private final Hedger byIbanHedger;
+    private final TransactionMetrics metrics;
+    private final DownstreamResilience resilience;
 
     Logger logger = LoggerFactory.getLogger(AcquisitionService.class);
     @Autowired
-
-    public AcquisitionService(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public AcquisitionService(@Qualifier("acquisitionWebClient") WebClient webClient,
+                              @Qualifier("acquisitionByAccountNumberCache") ReactiveLookupCache<String, Acquisition> byAccountNumberCache,
+                              @Qualifier("acquisitionByIbanCache") ReactiveLookupCache<String, Acquisition> byIbanCache,
+                              @Qualifier("acquisitionByAccountNumberFlight") SingleFlight<String, Acquisition> byAccountNumberFlight,
+                              @Qualifier("acquisitionByIbanFlight") SingleFlight<String, Acquisition> byIbanFlight,
+                              @Qualifier("acquisitionByAccountNumberHedger") Hedger byAccountNumberHedger,
+                              @Qualifier("acquisitionByIbanHedger") Hedger byIbanHedger,
+                              TransactionMetrics metrics, DownstreamResilience resilience) {
+        this.webClient = webClient;
+        this.byAccountNumberCache = byAccountNumberCache;
+        this.byIbanCache = byIbanCache;
+        this.byAccountNumberFlight = byAccountNumberFlight;
+        this.byIbanFlight = byIbanFlight;
+        this.byAccountNumberHedger = byAccountNumberHedger;
+        this.byIbanHedger = byIbanHedger;
+        this.metrics = metrics;
+        this.resilience = resilience;
     }
 
     public Mono<Acquisition> findByBillAccountNumber(String accountNumber) {
-        return webClientBuilder
-                .baseUrl("http://SERVICE-ACQUISITION/acquisition")
-                .build()
+        return byAccountNumberCache.get(accountNumber,
+                key -> byAccountNumberFlight.execute(key, k -> byAccountNumberHedger.execute(() -> fetchByBillAccountNumber(k))
+                        .transform(resilience.read("acquisition"))));
+    }
+
+    public Mono<Acquisition> findByIban(String iban) {
+        return byIbanCache.get(iban,
+                key -> byIbanFlight.execute(key, k -> byIbanHedger.execute(() -> fetchByIban(k))
+                        .transform(resilience.read("acquisition"))));
+    }
+
+    private Mono<Acquisition> fetchByBillAccountNumber(String accountNumber) {
+        return webClient
                 .get()
                 .uri("/bill/{accountNumber}", Collections.singletonMap("accountNumber", accountNumber))
                 .accept(APPLICATION_JSON)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                     return Mono.error(new RuntimeException("THE ACQUISITION FIND FAILED"));
                 })
-                .bodyToMono(Acquisition.class);
+                .bodyToMono(Acquisition.class)
+                .transform(resilience.call("acquisition"))
+                .transform(metrics.downstream("acquisition", "findByBillAccountNumber"));
     }
 
-    public Mono<Acquisition> findByIban(String iban) {
-        return webClientBuilder
-                .baseUrl("http://SERVICE-ACQUISITION/acquisition")
-                .build()
+    private Mono<Acquisition> fetchByIban(String iban) {
+        return webClient
                 .get()
                 .uri("/card/{iban}", Collections.singletonMap("iban", iban))
                 .accept(APPLICATION_JSON)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                      return Mono.error(new RuntimeException("THE ACQUISITION FIND FAILED"));
                 })
-                .bodyToMono(Acquisition.class);
+                .bodyToMono(Acquisition.class)
+                .transform(resilience.call("acquisition"))
+                .transform(metrics.downstream("acquisition", "findByIban"));
     }
 
     public Mono<Acquisition> updateAcquisition(Acquisition acquisition){
         logger.info("TRANSACTION_WEBCLIENT_UPDATE {}", acquisition);
-        return webClientBuilder
-                .baseUrl("http://SERVICE-ACQUISITION/acquisition")
-                .build()
+        return webClient
                 .post()
                 .uri("/update")
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .body(Mono.just(acquisition), Acquisition.class)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                     return Mono.error(new RuntimeException("THE ACQUISITION UPDATE FAILED"));
                 })
-                .onStatus(HttpStatus::is5xxServerError, response -> {
-                    return Mono.error(new RuntimeException("THE ACQUISITION UPDATE FAILED"));
-                })
-                .bodyToMono(Acquisition.class);
+                .bodyToMono(Acquisition.class)
+                .transform(resilience.write("acquisition"))
+                .transform(metrics.downstream("acquisition", "updateAcquisition"))
+                .doOnNext(updated -> {
+                    evict(acquisition);
+                    evict(updated);
+                });
+    }
+
+    private void evict(Acquisition acquisition) {
+        byIbanCache.invalidate(acquisition.getIban());
+        if (acquisition.getBill() != null) {
+            byAccountNumberCache.invalidate(acquisition.getBill().getAccountNumber());
+        }
     }
 
     public static void logTraceResponse(Logger log, ClientResponse response) {
@@ -3,10 +3,16 @@ package com.example.mstransaction.services;
 import com.example.mstransaction.exception.webclient.ArgumentWebClientNotValid;
 import com.example.mstransaction.models.entities.Bill;
 import com.example.mstransaction.utils.CustomMessage;
+import com.example.mstransaction.utils.DownstreamResilience;
+import com.example.mstransaction.utils.Hedger;
+import com.example.mstransaction.utils.ReactiveLookupCache;
+import com.example.mstransaction.utils.SingleFlight;
+import com.example.mstransaction.utils.TransactionMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -22,64 +28,122 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 @Service
 public class BillService {
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
     private final CustomMessage customMessage;
+    private final ReactiveLookupCache<String, Bill> byAccountNumberCache;
+    private final ReactiveLookupCache<String, Bill> byIbanCache;
+    private final SingleFlight<String, Bill> byAccountNumberFlight;
+    private final SingleFlight<String, Bill> byIbanFlight;
+    private final Hedger byAccountNumberHedger;
+    private final Hedger byIbanHedger;
+    private final TransactionMetrics metrics;
+    private final DownstreamResilience resilience;
     Logger logger = LoggerFactory.getLogger(BillService.class);
     @Autowired
-    public BillService(WebClient.Builder webClientBuilder, CustomMessage customMessage) {
-        this.webClientBuilder = webClientBuilder;
+    public BillService(@Qualifier("billWebClient") WebClient webClient, CustomMessage customMessage,
+                       @Qualifier("billByAccountNumberCache") ReactiveLookupCache<String, Bill> byAccountNumberCache,
+                       @Qualifier("billByIbanCache") ReactiveLookupCache<String, Bill> byIbanCache,
+                       @Qualifier("billByAccountNumberFlight") SingleFlight<String, Bill> byAccountNumberFlight,
+                       @Qualifier("billByIbanFlight") SingleFlight<String, Bill> byIbanFlight,
+                       @Qualifier("billByAccountNumberHedger") Hedger byAccountNumberHedger,
+                       @Qualifier("billByIbanHedger") Hedger byIbanHedger,
+                       TransactionMetrics metrics, DownstreamResilience resilience) {
+        this.webClient = webClient;
         this.customMessage = customMessage;
+        this.byAccountNumberCache = byAccountNumberCache;
+        this.byIbanCache = byIbanCache;
+        this.byAccountNumberFlight = byAccountNumberFlight;
+        this.byIbanFlight = byIbanFlight;
+        this.byAccountNumberHedger = byAccountNumberHedger;
+        this.byIbanHedger = byIbanHedger;
+        this.metrics = metrics;
+        this.resilience = resilience;
     }
 
     public Mono<Bill> findByAccountNumber(String accountNumber) {
-        return webClientBuilder
-                .baseUrl("http://SERVICE-BILL/bill")
-                .build()
+        return byAccountNumberCache.get(accountNumber,
+                key -> byAccountNumberFlight.execute(key, k -> byAccountNumberHedger.execute(() -> fetchByAccountNumber(k))
+                        .transform(resilience.read("bill"))));
+    }
+
+    /**
+     * Reads the bill from SERVICE-BILL, past the cache and the coalesced lookups, for the read-modify-write of its
+     * balance: a cached or shared copy can predate an update made by another instance or service.
+     */
+    public Mono<Bill> findLatestByAccountNumber(String accountNumber) {
+        return byAccountNumberHedger.execute(() -> fetchByAccountNumber(accountNumber))
+                .transform(resilience.read("bill"));
+    }
+
+    public Mono<Bill> findByIban(String iban) {
+        return byIbanCache.get(iban,
+                key -> byIbanFlight.execute(key, k -> byIbanHedger.execute(() -> fetchByIban(k))
+                        .transform(resilience.read("bill"))));
+    }
+
+    private Mono<Bill> fetchByAccountNumber(String accountNumber) {
+        return webClient
                 .get()
                 .uri("/acc/{accountNumber}", Collections.singletonMap("accountNumber", accountNumber))
                 .accept(APPLICATION_JSON)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                     return Mono.error(new ArgumentWebClientNotValid(
                             String.format("THE ACCOUNT NUMBER DONT EXIST IN MICRO SERVICE BILL-> %s", accountNumber)
                     ));
                 })
-                .bodyToMono(Bill.class);
+                .bodyToMono(Bill.class)
+                .transform(resilience.call("bill"))
+                .transform(metrics.downstream("bill", "findByAccountNumber"));
     }
 
-    public Mono<Bill> findByIban(String iban) {
-        return webClientBuilder
-                .baseUrl("http://SERVICE-BILL/bill")
-                .build()
+    private Mono<Bill> fetchByIban(String iban) {
+        return webClient
                 .get()
                 .uri("/acquisition/{iban}", Collections.singletonMap("iban", iban))
                 .accept(APPLICATION_JSON)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                     return Mono.error(new ArgumentWebClientNotValid(
                             String.format("THE IBAN DONT EXIST IN MICRO SERVICE BILL-> %s", iban)
                     ));
                 })
-                .bodyToMono(Bill.class);
+                .bodyToMono(Bill.class)
+                .transform(resilience.call("bill"))
+                .transform(metrics.downstream("bill", "findByIban"));
     }
 
     public Mono<Bill> updateBill(Bill bill){
         logger.info("BILL_WEBCLIENT_UPDATE {}", bill);
-        return webClientBuilder
-                .baseUrl("http://SERVICE-BILL/bill")
-                .build()
+        return webClient
                 .post()
                 .uri("/update")
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .body(Mono.just(bill), Bill.class)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                     return Mono.error(new RuntimeException("THE BILL UPDATE FAILED"));
                 })
-                .bodyToMono(Bill.class);
+                .bodyToMono(Bill.class)
+                .transform(resilience.write("bill"))
+                .transform(metrics.downstream("bill", "updateBill"))
+                .doOnNext(updated -> {
+                    evict(bill);
+                    evict(updated);
+                });
+    }
+
+    private void evict(Bill bill) {
+        byAccountNumberCache.invalidate(bill.getAccountNumber());
+        if (bill.getAcquisition() != null) {
+            byIbanCache.invalidate(bill.getAcquisition().getIban());
+        }
     }
 
     public static void logTraceResponse(Logger log, ClientResponse response) {
@@ -0,0 +1,203 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.BillSnapshot;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.utils.ModelCopier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact storage of transactions. The {@code account} of a stored transaction only keeps the account number, the
+ * balance after the transaction, the IBAN and the product name, under the same paths as before so the indexes and
+ * queries are unchanged. The rest of the bill graph goes to {@code bill_snapshot} once per distinct content and the
+ * transaction points to it with {@code snapshotId}.
+ */
+@Service
+@Slf4j(topic = "BILL_SNAPSHOT")
+public class BillSnapshotService {
+    private static final String SNAPSHOT_ID = "snapshotId";
+    private static final String ACCOUNT = "account";
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ModelCopier copier;
+    private final TransactionProperties properties;
+    private final Cache<String, Boolean> stored;
+
+    @Autowired
+    public BillSnapshotService(ReactiveMongoTemplate mongoTemplate, ModelCopier copier, TransactionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.copier = copier;
+        this.properties = properties;
+        this.stored = Caffeine.newBuilder()
+                .maximumSize(properties.getCompaction().getKnownSnapshots())
+                .build();
+    }
+
+    /**
+     * Stores the snapshot of the transaction's bill and replaces the bill with its compact copy.
+     */
+    public Mono<Transaction> compact(Transaction transaction) {
+        if (transaction.getBill() == null || transaction.getSnapshotId() != null) {
+            return Mono.just(transaction);
+        }
+        BillSnapshot snapshot = snapshotOf(transaction.getBill());
+        return store(snapshot).then(Mono.fromSupplier(() -> {
+            transaction.setBill(compactBill(transaction.getBill()));
+            transaction.setSnapshotId(snapshot.getId());
+            return transaction;
+        }));
+    }
+
+    /**
+     * {@link #compact} of every transaction, each distinct snapshot is written once.
+     */
+    public Mono<Void> compactAll(List<Transaction> transactions) {
+        Map<String, BillSnapshot> snapshots = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getBill() != null && transaction.getSnapshotId() == null) {
+                BillSnapshot snapshot = snapshotOf(transaction.getBill());
+                snapshots.putIfAbsent(snapshot.getId(), snapshot);
+                transaction.setBill(compactBill(transaction.getBill()));
+                transaction.setSnapshotId(snapshot.getId());
+            }
+        }
+        return storeAll(snapshots.values());
+    }
+
+    public Mono<BillSnapshot> findById(String snapshotId) {
+        return mongoTemplate.findById(snapshotId, BillSnapshot.class);
+    }
+
+    /**
+     * Rewrites the transactions stored with the whole bill graph. They are read in batches of
+     * {@code transaction.compaction.batch-size}, each batch is one unordered bulk write and
+     * {@code transaction.compaction.concurrency} batches run at the same time. A transaction is only rewritten while
+     * it has no {@code snapshotId}, so the migration can be stopped and run again.
+     *
+     * @return number of transactions rewritten
+     */
+    public Mono<Long> migrate() {
+        TransactionProperties.Compaction compaction = properties.getCompaction();
+        Query legacy = Query.query(Criteria.where(SNAPSHOT_ID).exists(false).and(ACCOUNT).exists(true))
+                .comment("findLegacyStorage");
+        return mongoTemplate.find(legacy, Transaction.class)
+                .buffer(compaction.getBatchSize())
+                .flatMap(this::migrateBatch, compaction.getConcurrency())
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> log.info("STORAGE_MIGRATION_DONE: {} transactions", count));
+    }
+
+    private Mono<Long> migrateBatch(List<Transaction> transactions) {
+        Map<String, BillSnapshot> snapshots = new LinkedHashMap<>();
+        List<WriteModel<Document>> updates = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            BillSnapshot snapshot = snapshotOf(transaction.getBill());
+            snapshots.putIfAbsent(snapshot.getId(), snapshot);
+            updates.add(new UpdateOneModel<>(
+                    new Document("_id", ObjectId.isValid(transaction.getId()) ? new ObjectId(transaction.getId()) : transaction.getId())
+                            .append(SNAPSHOT_ID, new Document("$exists", false)),
+                    new Document("$set", new Document(ACCOUNT, toDocument(compactBill(transaction.getBill())))
+                            .append(SNAPSHOT_ID, snapshot.getId()))));
+        }
+        return storeAll(snapshots.values())
+                .then(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                        .flatMap(collection -> Mono.from(collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)))))
+                .map(result -> (long) result.getModifiedCount());
+    }
+
+    private Mono<Void> storeAll(Collection<BillSnapshot> snapshots) {
+        return Flux.fromIterable(snapshots)
+                .concatMap(this::store)
+                .then();
+    }
+
+    /**
+     * Snapshots are immutable: a duplicate id means the same content is already stored.
+     */
+    private Mono<Void> store(BillSnapshot snapshot) {
+        if (stored.getIfPresent(snapshot.getId()) != null) {
+            return Mono.empty();
+        }
+        return mongoTemplate.insert(snapshot)
+                .then()
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .doOnSuccess(done -> stored.put(snapshot.getId(), Boolean.TRUE));
+    }
+
+    /**
+     * The bill without its balance, which changes with every transaction, and without the acquisition's link back
+     * to a bill.
+     */
+    private BillSnapshot snapshotOf(Bill bill) {
+        Bill content = copier.copy(bill);
+        content.setBalance(null);
+        if (content.getAcquisition() != null) {
+            content.getAcquisition().setBill(null);
+        }
+        return new BillSnapshot(sha256(toDocument(content).toJson()), content);
+    }
+
+    private Document toDocument(Bill bill) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(bill, document);
+        document.remove("_class");
+        return document;
+    }
+
+    private static Bill compactBill(Bill bill) {
+        Acquisition acquisition = null;
+        if (bill.getAcquisition() != null) {
+            acquisition = new Acquisition();
+            acquisition.setIban(bill.getAcquisition().getIban());
+            if (bill.getAcquisition().getProduct() != null) {
+                Product product = new Product();
+                product.setProductName(bill.getAcquisition().getProduct().getProductName());
+                acquisition.setProduct(product);
+            }
+        }
+        return Bill.builder()
+                .accountNumber(bill.getAccountNumber())
+                .balance(bill.getBalance())
+                .acquisition(acquisition)
+                .build();
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,64 +1,138 @@
 package com.example.mstransaction.services;
 
+import com.example.mstransaction.config.DownstreamProperties;
 import com.example.mstransaction.models.entities.Customer;
+import com.example.mstransaction.utils.BatchLoader;
+import com.example.mstransaction.utils.DownstreamResilience;
+import com.example.mstransaction.utils.Hedger;
+import com.example.mstransaction.utils.SingleFlight;
+import com.example.mstransaction.utils.TransactionMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
+/**
+ * Customers of SERVICE-CUSTOMER by identity number. Lookups are single-flighted {@code GET /identity/{identityNumber}}
+ * calls, or batched {@code POST /identity/batch} calls with {@code downstream.customer.batch-enabled}; a service that
+ * answers the batch call with 404 or 405 is asked key by key from then on.
+ */
 @Service
 public class CustomerService {
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
+    private final SingleFlight<String, Customer> byIdentityNumberFlight;
+    private final BatchLoader<String, Customer> byIdentityNumberBatch;
+    private final Hedger byIdentityNumberHedger;
+    private final TransactionMetrics metrics;
+    private final DownstreamResilience resilience;
+    private final AtomicBoolean batchEnabled;
 
     Logger logger = LoggerFactory.getLogger(CustomerService.class);
 
     @Autowired
-    public CustomerService(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public CustomerService(@Qualifier("customerWebClient") WebClient webClient,
+                           @Qualifier("customerByIdentityNumberFlight") SingleFlight<String, Customer> byIdentityNumberFlight,
+                           @Qualifier("customerByIdentityNumberBatch") BatchLoader<String, Customer> byIdentityNumberBatch,
+                           @Qualifier("customerByIdentityNumberHedger") Hedger byIdentityNumberHedger,
+                           TransactionMetrics metrics, DownstreamResilience resilience, DownstreamProperties properties) {
+        this.webClient = webClient;
+        this.byIdentityNumberFlight = byIdentityNumberFlight;
+        this.byIdentityNumberBatch = byIdentityNumberBatch;
+        this.byIdentityNumberHedger = byIdentityNumberHedger;
+        this.metrics = metrics;
+        this.resilience = resilience;
+        this.batchEnabled = new AtomicBoolean(properties.getCustomer().isBatchEnabled());
     }
 
     public Mono<Customer> findByIdentityNumber(String identityNumber) {
-        return webClientBuilder
-                .baseUrl("http://SERVICE-CUSTOMER/customer")
-                .build()
+        Mono<Customer> customer = batchEnabled.get()
+                ? byIdentityNumberBatch.execute(identityNumber, this::fetchByIdentityNumbers)
+                        .onErrorResume(CustomerService::isBatchUnsupported, e -> findOneByIdentityNumber(identityNumber))
+                : findOneByIdentityNumber(identityNumber);
+        return customer
+                .switchIfEmpty(Mono.error(() -> new RuntimeException(
+                        String.format("THE CUSTOMER DOES WITH IDENTITY NUMBER %s NOT EXIST IN MICRO SERVICE CUSTOMER: ", identityNumber)
+                )));
+    }
+
+    /**
+     * The customers in the order of {@code customers}; lookups of concurrent requests share the same batch calls.
+     */
+    public Flux<Customer> findAllByCustomerHolder(List<Customer> customers) {
+        return Flux.fromIterable(customers)
+                .map(Customer::getCustomerIdentityNumber)
+                .flatMapSequential(this::findByIdentityNumber);
+    }
+
+    private Mono<Customer> findOneByIdentityNumber(String identityNumber) {
+        return byIdentityNumberFlight.execute(identityNumber, key -> byIdentityNumberHedger.execute(() -> fetchByIdentityNumber(key))
+                .transform(resilience.read("customer")));
+    }
+
+    private Mono<Customer> fetchByIdentityNumber(String identityNumber) {
+        return webClient
                 .get()
                 .uri("/identity/{identityNumber}", Collections.singletonMap("identityNumber", identityNumber))
                 .accept(APPLICATION_JSON)
                 .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
                 .onStatus(HttpStatus::isError, response -> {
                     logTraceResponse(logger, response);
                     return Mono.error(new RuntimeException(
                             String.format("THE CUSTOMER DOES WITH IDENTITY NUMBER %s NOT EXIST IN MICRO SERVICE CUSTOMER: ", identityNumber)
                     ));
                 })
-                .bodyToMono(Customer.class);
+                .bodyToMono(Customer.class)
+                .transform(resilience.call("customer"))
+                .transform(metrics.downstream("customer", "findByIdentityNumber"));
     }
 
-    public Mono<Customer> findAllByCustomerHolder(List<Customer> customers) {
-        return webClientBuilder
-                .baseUrl("http://SERVICE-CUSTOMER/customer")
-                .build()
-                .get()
-                .uri("/identity/{customers}", Collections.singletonMap("customers", customers))
-                .accept(APPLICATION_JSON)
-                .retrieve()
-                .onStatus(HttpStatus::isError, response -> {
-                    logTraceResponse(logger, response);
-                    return Mono.error(new RuntimeException(
-                            String.format("THE CUSTOMER DOES WITH IDENTITY NUMBER %s NOT EXIST IN MICRO SERVICE CUSTOMER: ", customers)
-                    ));
-                })
-                .bodyToMono(Customer.class);
+    private Mono<Map<String, Customer>> fetchByIdentityNumbers(List<String> identityNumbers) {
+        return byIdentityNumberHedger.execute(() -> webClient
+                        .post()
+                        .uri("/identity/batch")
+                        .contentType(APPLICATION_JSON)
+                        .accept(APPLICATION_JSON)
+                        .bodyValue(identityNumbers)
+                        .retrieve()
+                        .onStatus(status -> status == HttpStatus.NOT_FOUND || status == HttpStatus.METHOD_NOT_ALLOWED,
+                                ClientResponse::createException)
+                        .onStatus(HttpStatus::is5xxServerError, ClientResponse::createException)
+                        .onStatus(HttpStatus::isError, response -> {
+                            logTraceResponse(logger, response);
+                            return Mono.error(new RuntimeException(
+                                    String.format("THE CUSTOMERS WITH IDENTITY NUMBERS %s COULD NOT BE FOUND IN MICRO SERVICE CUSTOMER", identityNumbers)
+                            ));
+                        })
+                        .bodyToFlux(Customer.class)
+                        .collectMap(Customer::getCustomerIdentityNumber)
+                        .transform(resilience.call("customer"))
+                        .transform(metrics.downstream("customer", "findByIdentityNumbers")))
+                .transform(resilience.read("customer"))
+                .doOnError(CustomerService::isBatchUnsupported, e -> {
+                    if (batchEnabled.compareAndSet(true, false)) {
+                        logger.warn("CUSTOMER_BATCH_UNSUPPORTED: {}, looking customers up one by one", e.getMessage());
+                    }
+                });
+    }
+
+    private static boolean isBatchUnsupported(Throwable e) {
+        return e instanceof WebClientResponseException.NotFound || e instanceof WebClientResponseException.MethodNotAllowed;
     }
 
     public static void logTraceResponse(Logger log, ClientResponse response) {
@@ -0,0 +1,169 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
+import com.example.mstransaction.models.entities.DailyBalance;
+import com.example.mstransaction.models.entities.DailyBalanceCoverage;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.repositories.IDailyBalanceRepository;
+import com.example.mstransaction.repositories.TransactionQueryRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains the {@code daily_balance} view: the last balance of every account for every day with movements.
+ * It is upserted after each created transaction and can be rebuilt from the transactions, archived ones included.
+ * The view is only complete from the day after the first transaction it recorded, or from the start of a backfill
+ * that reaches that day; {@link DailyBalanceCoverage} keeps that day and months before it are not read from the view.
+ */
+@Service
+@Slf4j(topic = "DAILY_BALANCE")
+public class DailyBalanceService {
+    private final IDailyBalanceRepository repository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionQueryRouter router;
+    private final TransactionProperties properties;
+    private final AtomicBoolean coverageStarted = new AtomicBoolean();
+
+    @Autowired
+    public DailyBalanceService(IDailyBalanceRepository repository, ReactiveMongoTemplate mongoTemplate, TransactionQueryRouter router,
+                               TransactionProperties properties) {
+        this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+        this.router = router;
+        this.properties = properties;
+    }
+
+    public Mono<Void> record(Transaction transaction) {
+        if (transaction.getBill() == null || transaction.getTransactionDate() == null) {
+            return Mono.empty();
+        }
+        LocalDate day = dayOf(transaction.getTransactionDate());
+        return startCoverage(day)
+                .then(upsert(transaction.getBill().getAccountNumber(), day, transaction.getBill().getBalance(), transaction.getTransactionDate()));
+    }
+
+    /**
+     * Calendar day in {@code transaction.zone-id} of a transaction date, which is stored in the zone of the JVM.
+     */
+    public LocalDate dayOf(LocalDateTime transactionDate) {
+        return transactionDate.atZone(ZoneId.systemDefault())
+                .withZoneSameInstant(zoneId())
+                .toLocalDate();
+    }
+
+    /**
+     * Snapshots of the account for the month. Empty when {@code zoneId} is not the zone the snapshots are kept in or
+     * when the view does not cover every day of the month; the caller then has to compute the days from the
+     * transactions.
+     */
+    public Flux<DailyBalanceDTO> findDailyBalances(String accountNumber, YearMonth yearMonth, ZoneId zoneId) {
+        if (!zoneId.equals(zoneId())) {
+            return Flux.empty();
+        }
+        return mongoTemplate.findById(zoneId.getId(), DailyBalanceCoverage.class)
+                .filter(coverage -> coverage.getCoveredFrom() != null && coverage.getCoveredFrom().compareTo(yearMonth.atDay(1).toString()) <= 0)
+                .flatMapMany(coverage -> repository.findByAccountNumberInRange(accountNumber, yearMonth.atDay(1).toString(),
+                        yearMonth.plusMonths(1).atDay(1).toString()))
+                .map(snapshot -> {
+                    DailyBalanceDTO dailyBalance = new DailyBalanceDTO();
+                    dailyBalance.setDay(snapshot.getDate());
+                    dailyBalance.setBalance(snapshot.getBalance());
+                    return dailyBalance;
+                });
+    }
+
+    /**
+     * Rebuilds the snapshots of every account for the days in {@code [from, to)}. Each day is an independent
+     * partition; {@code transaction.daily-balance.backfill-concurrency} days are aggregated at the same time.
+     * When the range reaches the covered days, the coverage starts at {@code from}.
+     *
+     * @return number of snapshots written
+     */
+    public Mono<Long> backfill(LocalDate from, LocalDate to) {
+        return Flux.range(0, (int) (to.toEpochDay() - from.toEpochDay()))
+                .map(from::plusDays)
+                .flatMap(this::backfillDay, properties.getDailyBalance().getBackfillConcurrency())
+                .reduce(0L, Long::sum)
+                .flatMap(count -> extendCoverage(from, to).thenReturn(count));
+    }
+
+    private Mono<Long> backfillDay(LocalDate day) {
+        LocalDateTime start = LocalDateTime.ofInstant(day.atStartOfDay(zoneId()).toInstant(), ZoneId.systemDefault());
+        LocalDateTime end = LocalDateTime.ofInstant(day.plusDays(1).atStartOfDay(zoneId()).toInstant(), ZoneId.systemDefault());
+        return router.findLastBalancePerAccount(start, end)
+                .concatMap(result -> upsert(result.getString("_id"), day, toMoney(result.get("balance")),
+                        LocalDateTime.ofInstant(result.getDate("lastTransactionDate").toInstant(), ZoneId.systemDefault()))
+                        .thenReturn(1L))
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> log.info("DAILY_BALANCE_BACKFILL {}: {} accounts", day, count));
+    }
+
+    /**
+     * Writes the balance only when the snapshot is older than {@code transactionDate}. When a newer snapshot exists
+     * the filter does not match and the upsert collides with its id, which is the expected outcome.
+     */
+    private Mono<Void> upsert(String accountNumber, LocalDate day, Money balance, LocalDateTime transactionDate) {
+        Query query = Query.query(Criteria.where("_id").is(accountNumber + ":" + day)
+                .orOperator(Criteria.where("lastTransactionDate").lte(transactionDate),
+                        Criteria.where("lastTransactionDate").exists(false)));
+        Update update = new Update()
+                .set("balance", balance)
+                .set("lastTransactionDate", transactionDate)
+                .setOnInsert("accountNumber", accountNumber)
+                .setOnInsert("date", day.toString());
+        return mongoTemplate.upsert(query, update, DailyBalance.class)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * The first transaction recorded in this zone starts the coverage on the next day: the ones created earlier that
+     * day, before the view existed, are not in it. Checked once per instance.
+     */
+    private Mono<Void> startCoverage(LocalDate day) {
+        if (coverageStarted.get()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.upsert(Query.query(Criteria.where("_id").is(zoneId().getId())),
+                        new Update().setOnInsert("coveredFrom", day.plusDays(1).toString()), DailyBalanceCoverage.class)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .doOnSuccess(result -> coverageStarted.set(true))
+                .then();
+    }
+
+    private Mono<Void> extendCoverage(LocalDate from, LocalDate to) {
+        Query reached = Query.query(Criteria.where("_id").is(zoneId().getId())
+                .and("coveredFrom").gt(from.toString()).lte(to.toString()));
+        return mongoTemplate.updateFirst(reached, new Update().set("coveredFrom", from.toString()), DailyBalanceCoverage.class)
+                .doOnNext(result -> {
+                    if (result.getModifiedCount() > 0) {
+                        log.info("DAILY_BALANCE_COVERED_FROM {}", from);
+                    }
+                })
+                .then();
+    }
+
+    private ZoneId zoneId() {
+        return ZoneId.of(properties.getZoneId());
+    }
+
+    private static Money toMoney(Object value) {
+        return value instanceof Number ? Money.of((Number) value) : null;
+    }
+}
@@ -1,14 +1,22 @@
 package com.example.mstransaction.services;
 
+import com.example.mstransaction.models.dto.CommissionSummaryDTO;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
 import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.utils.TransactionCursor;
+import com.example.mstransaction.utils.TransactionOrder;
+import org.springframework.data.domain.Sort;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.ZoneId;
 
 public interface ITransactionService extends IBaseService<Transaction, String>{
-    Mono<List<Transaction>> findAllByBill_AccountNumber(String accountNumber);
+    Flux<Transaction> findAllByBill_AccountNumber(String accountNumber, TransactionCursor after, int limit, Sort.Direction direction);
     Flux<Transaction> findByTransactionDateBetween(LocalDateTime from, LocalDateTime to);
     Flux<Transaction> findByBill_Acquisition_Product_ProductName(String productName);
+    Flux<DailyBalanceDTO> findDailyLastBalance(String accountNumber, LocalDateTime from, LocalDateTime to, ZoneId zoneId);
+    Flux<Transaction> findByProductNameInRange(String productName, LocalDateTime from, LocalDateTime to);
+    Flux<CommissionSummaryDTO> summarizeCommissionByProduct(String productName, LocalDateTime from, LocalDateTime to, ZoneId zoneId);
+    Flux<Transaction> findTop(LocalDateTime from, LocalDateTime to, String accountNumber, String productName, TransactionOrder order, int limit);
 }
@@ -0,0 +1,138 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.MovementCounter;
+import com.example.mstransaction.utils.TransactionMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Monthly movement counters of the accounts, kept in the local {@code movement_counter} collection and
+ * updated with an atomic {@code $inc}. The count returned by {@link #increment} decides the commission;
+ * SERVICE-ACQUISITION only receives a copy of it, asynchronously and latest value first.
+ */
+@Service
+@Slf4j(topic = "MOVEMENT_COUNTER")
+public class MovementCounterService {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final AcquisitionService acquisitionService;
+    private final TransactionProperties properties;
+    private final TransactionMetrics metrics;
+    private final ConcurrentMap<String, Acquisition> pendingSync = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MovementCounterService(ReactiveMongoTemplate mongoTemplate, AcquisitionService acquisitionService, TransactionProperties properties,
+                                  TransactionMetrics metrics) {
+        this.mongoTemplate = mongoTemplate;
+        this.acquisitionService = acquisitionService;
+        this.properties = properties;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Adds {@code movements} to the counter of the current month of the account. The first counter of an account
+     * starts from the count the acquisition holds, which is where the movements were counted before this collection.
+     *
+     * @return the counter after the increment; hand it to {@link #release} when the movements are not written
+     */
+    public Mono<MovementCounter> increment(String accountNumber, int movements, Acquisition acquisition) {
+        YearMonth period = YearMonth.now(ZoneId.of(properties.getZoneId()));
+        String id = accountNumber + ":" + period;
+        // two first increments of a month can race on the unique _id; the retry finds the inserted document
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)), new Update().inc("count", movements),
+                        FindAndModifyOptions.options().returnNew(true), MovementCounter.class)
+                .switchIfEmpty(Mono.defer(() -> open(id, accountNumber, period, movements, acquisition)))
+                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance));
+    }
+
+    /**
+     * Takes back {@code movements} of an {@link #increment} whose movements failed to be written, so they do not
+     * consume the free movements of the month.
+     */
+    public Mono<Void> release(MovementCounter counter, int movements) {
+        if (movements == 0) {
+            return Mono.empty();
+        }
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(counter.getId())), new Update().inc("count", -movements),
+                        MovementCounter.class)
+                .doOnError(e -> log.warn("MOVEMENT_COUNTER_RELEASE_FAILED {}: {}", counter.getId(), e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<MovementCounter> open(String id, String accountNumber, YearMonth period, int movements, Acquisition acquisition) {
+        return mongoTemplate.exists(Query.query(Criteria.where("accountNumber").is(accountNumber)), MovementCounter.class)
+                .flatMap(counted -> {
+                    MovementCounter counter = new MovementCounter();
+                    counter.setId(id);
+                    counter.setAccountNumber(accountNumber);
+                    counter.setPeriod(period.toString());
+                    counter.setCount((counted ? 0L : acquiredMovements(acquisition)) + movements);
+                    return mongoTemplate.insert(counter);
+                });
+    }
+
+    private static long acquiredMovements(Acquisition acquisition) {
+        Integer quantity = acquisition.getProduct() == null || acquisition.getProduct().getRules() == null ? null
+                : acquisition.getProduct().getRules().getMaximumLimitMonthlyMovementsQuantity();
+        return quantity == null ? 0L : quantity;
+    }
+
+    /**
+     * Whether the movement that took the counter to {@code count} pays commission.
+     */
+    public boolean isCommissioned(long count) {
+        return count > properties.getMovements().getFreePerMonth();
+    }
+
+    /**
+     * Commission of the movement that took the counter to {@code count}: {@code transaction.movements.commission}
+     * once the free movements of the month are used, zero before.
+     */
+    public Money commission(long count) {
+        return isCommissioned(count) ? Money.of(properties.getMovements().getCommission()) : Money.zero();
+    }
+
+    /**
+     * Sends the acquisition to SERVICE-ACQUISITION without holding the caller. There is at most one update in
+     * flight per account; updates that arrive meanwhile are collapsed into the latest one.
+     */
+    public void syncToAcquisition(String accountNumber, Acquisition acquisition) {
+        if (pendingSync.put(accountNumber, acquisition) == null) {
+            flush(accountNumber);
+        }
+    }
+
+    private void flush(String accountNumber) {
+        Acquisition latest = pendingSync.get(accountNumber);
+        if (latest == null) {
+            return;
+        }
+        acquisitionService.updateAcquisition(latest)
+                .transform(metrics.saveStage("acquisition_update"))
+                .doOnError(e -> log.warn("ACQUISITION_SYNC_FAILED {}: {}", accountNumber, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> {
+                    if (!pendingSync.remove(accountNumber, latest)) {
+                        flush(accountNumber);
+                    }
+                })
+                .subscribe();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.entities.ArchiveCheckpoint;
+import com.example.mstransaction.repositories.TransactionBuckets;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves the transactions older than {@code transaction.archive.older-than} from the {@code transaction} collection to
+ * the monthly buckets of {@link TransactionBuckets}, oldest first, {@code transaction.archive.batch-size} at a time
+ * with a pause of {@code transaction.archive.batch-delay} after every batch.
+ * A batch is copied to its buckets, then recorded in the {@link ArchiveCheckpoint}, then deleted from the live
+ * collection. Every step can be repeated, so a run that stopped anywhere is finished by the next one: copies already in
+ * a bucket are skipped and the checkpoint only moves forward, in {@code transactionDate, _id} order. Aggregates over
+ * both tiers split them at the checkpoint, see {@code TransactionQueryRouter}, so it is only moved once the batch is in
+ * its buckets. A run holds the checkpoint for {@code transaction.archive.lease}, renewed with every batch, so only one
+ * instance archives at a time.
+ */
+@Service
+@Slf4j(topic = "TRANSACTION_ARCHIVE")
+public class TransactionArchiveService {
+    private static final int DUPLICATE_KEY = 11000;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionBuckets buckets;
+    private final TransactionProperties properties;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Autowired
+    public TransactionArchiveService(ReactiveMongoTemplate mongoTemplate, TransactionBuckets buckets, TransactionProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.buckets = buckets;
+        this.properties = properties;
+    }
+
+    /**
+     * @return transactions moved by this run, 0 when another instance holds the checkpoint
+     */
+    public Mono<Long> archive() {
+        TransactionProperties.Archive archive = properties.getArchive();
+        LocalDateTime cutoff = LocalDateTime.now().minus(archive.getOlderThan());
+        return acquire()
+                .flatMap(checkpoint -> Mono.defer(() -> moveBatch(cutoff))
+                        .delayUntil(moved -> Mono.delay(archive.getBatchDelay()))
+                        .repeat()
+                        .takeUntil(moved -> moved < archive.getBatchSize())
+                        .reduce(0L, Long::sum)
+                        .flatMap(moved -> release().thenReturn(moved)))
+                .doOnNext(moved -> log.info("ARCHIVE_RUN_DONE: {} transactions older than {}", moved, cutoff))
+                .defaultIfEmpty(0L);
+    }
+
+    private Mono<Long> moveBatch(LocalDateTime cutoff) {
+        Query oldest = Query.query(Criteria.where("transactionDate").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "transactionDate", "_id"))
+                .limit(properties.getArchive().getBatchSize())
+                .comment("findArchivable");
+        return mongoTemplate.find(oldest, Document.class, buckets.live())
+                .collectList()
+                .flatMap(batch -> batch.isEmpty() ? Mono.just(0L) : copy(batch)
+                        .then(advance(batch.get(batch.size() - 1), batch.size()))
+                        .then(delete(batch)));
+    }
+
+    private Mono<Void> copy(List<Document> batch) {
+        Map<YearMonth, List<Document>> byMonth = new LinkedHashMap<>();
+        for (Document document : batch) {
+            byMonth.computeIfAbsent(YearMonth.from(storedDate(document)), month -> new ArrayList<>()).add(document);
+        }
+        return Flux.fromIterable(byMonth.entrySet())
+                .concatMap(month -> buckets.ensure(month.getKey())
+                        .flatMap(mongoTemplate::getCollection)
+                        .flatMap(bucket -> Mono.from(bucket.insertMany(month.getValue(), new InsertManyOptions().ordered(false))))
+                        .onErrorResume(MongoBulkWriteException.class, e -> onlyDuplicates(e) ? Mono.empty() : Mono.error(e)))
+                .then();
+    }
+
+    /**
+     * Moves the checkpoint to the last transaction of the batch, unless it is already further, and renews the lease.
+     */
+    private Mono<Void> advance(Document last, int copied) {
+        LocalDateTime date = storedDate(last);
+        Object id = last.get("_id");
+        Query owned = Query.query(Criteria.where("_id").is(ArchiveCheckpoint.TRANSACTION).and("owner").is(owner));
+        Update lease = new Update()
+                .set("lockedUntil", LocalDateTime.now().plus(properties.getArchive().getLease()))
+                .inc("archived", copied);
+        Query behind = Query.query(Criteria.where("_id").is(ArchiveCheckpoint.TRANSACTION).and("owner").is(owner)
+                .orOperator(Criteria.where("lastTransactionDate").exists(false),
+                        Criteria.where("lastTransactionDate").lt(date),
+                        Criteria.where("lastTransactionDate").is(date).and("lastId").lt(id)));
+        return mongoTemplate.updateFirst(owned, lease, ArchiveCheckpoint.class)
+                .then(mongoTemplate.updateFirst(behind, new Update().set("lastTransactionDate", date).set("lastId", id),
+                        ArchiveCheckpoint.class))
+                .then();
+    }
+
+    private Mono<Long> delete(List<Document> batch) {
+        List<Object> ids = new ArrayList<>(batch.size());
+        batch.forEach(document -> ids.add(document.get("_id")));
+        return mongoTemplate.getCollection(buckets.live())
+                .flatMap(live -> Mono.from(live.deleteMany(new Document("_id", new Document("$in", ids)))))
+                .map(result -> result.getDeletedCount());
+    }
+
+    /**
+     * Takes the checkpoint when its lease is free or expired. The upsert of a held checkpoint collides with its id.
+     */
+    private Mono<ArchiveCheckpoint> acquire() {
+        LocalDateTime now = LocalDateTime.now();
+        Query free = Query.query(Criteria.where("_id").is(ArchiveCheckpoint.TRANSACTION)
+                .orOperator(Criteria.where("lockedUntil").exists(false),
+                        Criteria.where("lockedUntil").lt(now),
+                        Criteria.where("owner").is(owner)));
+        Update lease = new Update()
+                .set("owner", owner)
+                .set("lockedUntil", now.plus(properties.getArchive().getLease()));
+        return mongoTemplate.findAndModify(free, lease, FindAndModifyOptions.options().upsert(true).returnNew(true), ArchiveCheckpoint.class)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.info("ARCHIVE_RUN_SKIPPED: the checkpoint is held by another instance");
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> release() {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(ArchiveCheckpoint.TRANSACTION).and("owner").is(owner)),
+                        new Update().unset("lockedUntil"), ArchiveCheckpoint.class)
+                .then();
+    }
+
+    private static LocalDateTime storedDate(Document document) {
+        return LocalDateTime.ofInstant(document.get("transactionDate", Date.class).toInstant(), ZoneId.systemDefault());
+    }
+
+    private static boolean onlyDuplicates(MongoBulkWriteException e) {
+        return e.getWriteErrors().stream()
+                .allMatch(error -> error.getCode() == DUPLICATE_KEY || ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.dto.BulkItemResultDTO;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.MovementCounter;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.models.entities.TransactionType;
+import com.example.mstransaction.repositories.ITransactionRepository;
+import com.example.mstransaction.utils.AccountSequencer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Ingestion of large sets of movements. The body is read in chunks of {@code transaction.bulk.chunk-size};
+ * inside a chunk the movements are grouped by account so every account costs one acquisition lookup,
+ * one counter increment, one bill update and one unordered insert instead of one of each per movement.
+ */
+@Service
+@Slf4j(topic = "TRANSACTION_BULK")
+public class TransactionBulkService {
+    private final ITransactionRepository repository;
+    private final BillService billService;
+    private final AcquisitionService acquisitionService;
+    private final AccountSequencer accountSequencer;
+    private final MovementCounterService movementCounterService;
+    private final DailyBalanceService dailyBalanceService;
+    private final BillSnapshotService billSnapshotService;
+    private final TransactionProperties properties;
+
+    @Autowired
+    public TransactionBulkService(ITransactionRepository repository, BillService billService, AcquisitionService acquisitionService,
+                                  AccountSequencer accountSequencer, MovementCounterService movementCounterService,
+                                  DailyBalanceService dailyBalanceService, BillSnapshotService billSnapshotService,
+                                  TransactionProperties properties) {
+        this.repository = repository;
+        this.billService = billService;
+        this.acquisitionService = acquisitionService;
+        this.accountSequencer = accountSequencer;
+        this.movementCounterService = movementCounterService;
+        this.dailyBalanceService = dailyBalanceService;
+        this.billSnapshotService = billSnapshotService;
+        this.properties = properties;
+    }
+
+    public Flux<BulkItemResultDTO> ingest(Flux<Transaction> transactions) {
+        return transactions.index()
+                .buffer(properties.getBulk().getChunkSize())
+                .concatMap(this::ingestChunk);
+    }
+
+    private Flux<BulkItemResultDTO> ingestChunk(List<Tuple2<Long, Transaction>> chunk) {
+        Map<String, List<Tuple2<Long, Transaction>>> byAccount = new LinkedHashMap<>();
+        List<BulkItemResultDTO> rejected = new ArrayList<>();
+        for (Tuple2<Long, Transaction> item : chunk) {
+            Bill bill = item.getT2().getBill();
+            Money amount = item.getT2().getTransactionAmount();
+            if (bill == null || bill.getAccountNumber() == null) {
+                rejected.add(failed(item, null, "THE MOVEMENT HAS NO ACCOUNT NUMBER"));
+            } else if (TransactionType.of(item.getT2().getTransactionType()).isPresent() && (amount == null || amount.compareTo(Money.zero()) <= 0)) {
+                rejected.add(failed(item, bill.getAccountNumber(), "THE MOVEMENT HAS NO POSITIVE AMOUNT"));
+            } else {
+                byAccount.computeIfAbsent(bill.getAccountNumber(), key -> new ArrayList<>()).add(item);
+            }
+        }
+        return Flux.fromIterable(rejected)
+                .concatWith(Flux.fromIterable(byAccount.entrySet())
+                        .flatMap(account -> accountSequencer
+                                        .submit(account.getKey(), () -> ingestAccount(account.getKey(), account.getValue()))
+                                        .flatMapIterable(results -> results),
+                                properties.getBulk().getAccountConcurrency()));
+    }
+
+    /**
+     * Applies the same rules as a single create, movement after movement, and writes the result once. The bill,
+     * the acquisition, the counter and the stored balances only keep the movements the unordered insert actually wrote.
+     */
+    private Mono<List<BulkItemResultDTO>> ingestAccount(String accountNumber, List<Tuple2<Long, Transaction>> items) {
+        return acquisitionService.findByBillAccountNumber(accountNumber)
+                .flatMap(acquisition -> movementCounterService.increment(accountNumber, items.size(), acquisition)
+                        .flatMap(counter -> Mono.defer(() -> writeAccount(accountNumber, items, acquisition, counter))
+                                .onErrorResume(e -> movementCounterService.release(counter, items.size()).then(Mono.error(e)))
+                                .switchIfEmpty(Mono.defer(() -> movementCounterService.release(counter, items.size()).then(Mono.empty())))))
+                .onErrorResume(e -> {
+                    log.warn("BULK_ACCOUNT_FAILED {}: {}", accountNumber, e.getMessage());
+                    return Mono.just(failAll(items, accountNumber, e.getMessage()));
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> failAll(items, accountNumber, "THE ACQUISITION OF THE ACCOUNT DOES NOT EXIST")));
+    }
+
+    private Mono<List<BulkItemResultDTO>> writeAccount(String accountNumber, List<Tuple2<Long, Transaction>> items, Acquisition acquisition,
+                                                       MovementCounter counter) {
+        long before = counter.getCount() - items.size();
+        List<Transaction> newTransactions = new ArrayList<>(items.size());
+        items.forEach(item -> newTransactions.add(newTransaction(item.getT2())));
+        return billService.findLatestByAccountNumber(accountNumber)
+                .flatMap(bill -> {
+                    acquisition.getProduct().getRules().setMaximumLimitMonthlyMovementsQuantity(counter.getCount().intValue());
+                    Money stored = bill.getBalance() == null ? Money.zero() : bill.getBalance();
+                    newTransactions.forEach(newTransaction -> newTransaction.setBill(Bill.builder()
+                            .id(bill.getId())
+                            .accountNumber(bill.getAccountNumber())
+                            .acquisition(acquisition)
+                            .build()));
+                    settle(items, newTransactions, stored, before, Collections.emptyMap(), new ArrayList<>());
+                    return billSnapshotService.compactAll(newTransactions)
+                            .then(Mono.defer(() -> repository.insertUnordered(newTransactions)))
+                            .flatMap(failures -> {
+                                List<Transaction> changed = new ArrayList<>();
+                                Money balance = settle(items, newTransactions, stored, before, failures, changed);
+                                return applyInserted(bill, balance, acquisition, counter, items.size(), changed, failures)
+                                        .delayUntil(unsettled -> recordDailyBalances(newTransactions, failures))
+                                        .map(unsettled -> results(accountNumber, items, newTransactions, failures, unsettled));
+                            });
+                });
+    }
+
+    /**
+     * Numbers the movements that are not in {@code failures} after the {@code before} ones of the month, and chains
+     * their balances from {@code stored}: each gets its commission and the balance after it. The ones that already
+     * had other values are added to {@code changed}.
+     *
+     * @return the balance after the last of them
+     */
+    private Money settle(List<Tuple2<Long, Transaction>> items, List<Transaction> newTransactions, Money stored, long before, Map<Integer, String> failures,
+                         List<Transaction> changed) {
+        long movements = before;
+        Money balance = stored;
+        for (int i = 0; i < newTransactions.size(); i++) {
+            if (failures.containsKey(i)) {
+                continue;
+            }
+            Transaction newTransaction = newTransactions.get(i);
+            Money commission = movementCounterService.commission(++movements);
+            balance = TransactionType.balanceAfter(newTransaction.getTransactionType(), balance, newTransaction.getTransactionAmount(),
+                            items.get(i).getT2().getBill().getBalance())
+                    .minus(commission);
+            if (newTransaction.getBill().getBalance() != null
+                    && !(commission.equals(newTransaction.getCommission()) && balance.equals(newTransaction.getBill().getBalance()))) {
+                changed.add(newTransaction);
+            }
+            newTransaction.setCommission(commission);
+            newTransaction.getBill().setBalance(balance);
+        }
+        return balance;
+    }
+
+    /**
+     * Gives the rejected movements back to the counter, rewrites the commission and balance of the inserted ones that
+     * were numbered past a rejected one, and moves the bill to {@code balance}. The movements are already written, so
+     * a failed rewrite or bill update does not fail them.
+     *
+     * @return why the inserted movements are not settled, empty when they are
+     */
+    private Mono<String> applyInserted(Bill bill, Money balance, Acquisition acquisition, MovementCounter counter, int movements,
+                                       List<Transaction> changed, Map<Integer, String> failures) {
+        Mono<Void> release = movementCounterService.release(counter, failures.size());
+        if (failures.size() == movements) {
+            return release.thenReturn("");
+        }
+        acquisition.getProduct().getRules().setMaximumLimitMonthlyMovementsQuantity((int) (counter.getCount() - failures.size()));
+        acquisition.setBill(Bill.builder()
+                .id(bill.getId())
+                .accountNumber(bill.getAccountNumber())
+                .balance(balance)
+                .build());
+        bill.setBalance(balance);
+        bill.setAcquisition(acquisition);
+        Mono<String> rewrite = repository.updateBalances(changed)
+                .then(Mono.<String>empty())
+                .onErrorResume(e -> {
+                    log.error("BULK_BALANCE_REWRITE_FAILED {}: {}", bill.getAccountNumber(), e.getMessage());
+                    return Mono.just("THE STORED BALANCES WERE NOT REWRITTEN: " + e.getMessage());
+                });
+        Mono<String> billUpdate = billService.updateBill(bill)
+                .doOnNext(updated -> movementCounterService.syncToAcquisition(bill.getAccountNumber(), acquisition))
+                .then(Mono.<String>empty())
+                .onErrorResume(e -> {
+                    log.error("BULK_BILL_UPDATE_FAILED {}: {}", bill.getAccountNumber(), e.getMessage());
+                    return Mono.just("THE BILL WAS NOT UPDATED: " + e.getMessage());
+                });
+        return release.thenMany(Flux.concat(rewrite, billUpdate))
+                .collect(Collectors.joining("; "));
+    }
+
+    private static List<BulkItemResultDTO> results(String accountNumber, List<Tuple2<Long, Transaction>> items, List<Transaction> newTransactions,
+                                                   Map<Integer, String> failures, String unsettled) {
+        List<BulkItemResultDTO> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (failures.containsKey(i)) {
+                results.add(failed(items.get(i), accountNumber, failures.get(i)));
+            } else if (unsettled.isEmpty()) {
+                results.add(new BulkItemResultDTO(items.get(i).getT1(), accountNumber, newTransactions.get(i).getId(), BulkItemResultDTO.CREATED, null));
+            } else {
+                results.add(new BulkItemResultDTO(items.get(i).getT1(), accountNumber, newTransactions.get(i).getId(), BulkItemResultDTO.UNSETTLED, unsettled));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The movements of an account are in order, so the last inserted one of each day carries the day balance.
+     */
+    private Mono<Void> recordDailyBalances(List<Transaction> newTransactions, Map<Integer, String> failures) {
+        Map<LocalDate, Transaction> lastOfDay = new LinkedHashMap<>();
+        for (int i = 0; i < newTransactions.size(); i++) {
+            if (!failures.containsKey(i)) {
+                lastOfDay.put(dailyBalanceService.dayOf(newTransactions.get(i).getTransactionDate()), newTransactions.get(i));
+            }
+        }
+        return Flux.fromIterable(lastOfDay.values())
+                .concatMap(dailyBalanceService::record)
+                .onErrorResume(e -> {
+                    log.warn("DAILY_BALANCE_RECORD_FAILED: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static Transaction newTransaction(Transaction source) {
+        Transaction newTransaction = new Transaction();
+        newTransaction.setTransactionType(source.getTransactionType());
+        newTransaction.setTransactionAmount(source.getTransactionAmount());
+        newTransaction.setDescription(source.getDescription());
+        newTransaction.setTransactionDate(LocalDateTime.now());
+        return newTransaction;
+    }
+
+    private static List<BulkItemResultDTO> failAll(List<Tuple2<Long, Transaction>> items, String accountNumber, String error) {
+        List<BulkItemResultDTO> results = new ArrayList<>(items.size());
+        items.forEach(item -> results.add(failed(item, accountNumber, error)));
+        return results;
+    }
+
+    private static BulkItemResultDTO failed(Tuple2<Long, Transaction> item, String accountNumber, String error) {
+        return new BulkItemResultDTO(item.getT1(), accountNumber, null, BulkItemResultDTO.FAILED, error);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.dto.TransactionEventDTO;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveChangeStreamOperation;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Live feed of the created transactions, read from a change stream on the {@code transaction} collection.
+ * Subscribers without a resume token share one change-stream cursor, opened with the first of them and closed with
+ * the last one. A subscriber that resumes gets its own cursor starting right after its token.
+ * Filters are applied per subscriber before its buffer of {@code transaction.feed.buffer-size} events; when the
+ * buffer is full {@code transaction.feed.overflow} decides, and dropped events are counted in
+ * {@code transaction.feed.dropped}.
+ */
+@Service
+@Slf4j(topic = "TRANSACTION_FEED")
+public class TransactionFeedService {
+    private static final String RESUME_TOKEN_DATA = "_data";
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionProperties properties;
+    private final Counter dropped;
+    private final Flux<ChangeStreamEvent<Transaction>> shared;
+
+    @Autowired
+    public TransactionFeedService(ReactiveMongoTemplate mongoTemplate, TransactionProperties properties, MeterRegistry registry) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.dropped = Counter.builder("transaction.feed.dropped")
+                .description("Feed events dropped because the subscriber buffer was full")
+                .register(registry);
+        this.shared = changes(null)
+                .doOnSubscribe(subscription -> log.info("TRANSACTION_FEED_OPENED"))
+                .doOnCancel(() -> log.info("TRANSACTION_FEED_CLOSED"))
+                .publish()
+                .refCount();
+    }
+
+    /**
+     * @param accountNumber only transactions of this account, any account when {@code null}
+     * @param productName   only transactions of this product, any product when {@code null}
+     * @param resumeAfter   resume token of the last event the subscriber received, {@code null} to start now
+     */
+    public Flux<TransactionEventDTO> listen(String accountNumber, String productName, String resumeAfter) {
+        TransactionProperties.Feed feed = properties.getFeed();
+        Flux<ChangeStreamEvent<Transaction>> events = resumeAfter == null
+                ? shared
+                : changes(new BsonDocument(RESUME_TOKEN_DATA, new BsonString(resumeAfter)));
+        return events
+                .filter(event -> event.getBody() != null && matches(event.getBody(), accountNumber, productName))
+                .map(event -> new TransactionEventDTO(resumeToken(event), event.getBody()))
+                .onBackpressureBuffer(feed.getBufferSize(), event -> dropped.increment(), feed.getOverflow());
+    }
+
+    private Flux<ChangeStreamEvent<Transaction>> changes(BsonValue resumeAfter) {
+        ReactiveChangeStreamOperation.ChangeStreamWithFilterAndProjection<Transaction> changes = mongoTemplate
+                .changeStream(Transaction.class)
+                .watchCollection(mongoTemplate.getCollectionName(Transaction.class))
+                .filter(Aggregation.newAggregation(Aggregation.match(Criteria.where("operationType").is("insert"))));
+        return resumeAfter == null ? changes.listen() : changes.resumeAfter(resumeAfter).listen();
+    }
+
+    private static boolean matches(Transaction transaction, String accountNumber, String productName) {
+        Bill bill = transaction.getBill();
+        if (accountNumber != null && (bill == null || !accountNumber.equals(bill.getAccountNumber()))) {
+            return false;
+        }
+        return productName == null || (bill != null && bill.getAcquisition() != null
+                && bill.getAcquisition().getProduct() != null
+                && productName.equals(bill.getAcquisition().getProduct().getProductName()));
+    }
+
+    private static String resumeToken(ChangeStreamEvent<Transaction> event) {
+        BsonValue token = event.getResumeToken();
+        return token != null && token.isDocument() && token.asDocument().isString(RESUME_TOKEN_DATA)
+                ? token.asDocument().getString(RESUME_TOKEN_DATA).getValue()
+                : null;
+    }
+}
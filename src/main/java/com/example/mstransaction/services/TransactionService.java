@@ -1,24 +1,40 @@
 package com.example.mstransaction.services;
 
+import com.example.mstransaction.models.dto.CommissionSummaryDTO;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
 import com.example.mstransaction.models.entities.Transaction;
 import com.example.mstransaction.repositories.IRepository;
 import com.example.mstransaction.repositories.ITransactionRepository;
+import com.example.mstransaction.repositories.TransactionQueryRouter;
+import com.example.mstransaction.utils.TransactionCursor;
+import com.example.mstransaction.utils.TransactionOrder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.ZoneId;
 
 @Service
+@Slf4j(topic = "TRANSACTION_SERVICE")
 public class TransactionService extends BaseService<Transaction, String> implements ITransactionService{
 
     private final ITransactionRepository repository;
+    private final DailyBalanceService dailyBalanceService;
+    private final BillSnapshotService billSnapshotService;
+    private final TransactionQueryRouter router;
 
     @Autowired
-    public TransactionService(ITransactionRepository repository) {
+    public TransactionService(ITransactionRepository repository, DailyBalanceService dailyBalanceService, BillSnapshotService billSnapshotService,
+                              TransactionQueryRouter router) {
         this.repository = repository;
+        this.dailyBalanceService = dailyBalanceService;
+        this.billSnapshotService = billSnapshotService;
+        this.router = router;
     }
 
     @Override
@@ -26,19 +42,107 @@ public class TransactionService extends BaseService<Transaction, String> impleme
         return repository;
     }
 
+    /**
+     * Stores the compact transaction. The daily balance snapshot is a derived view: failing to update it does not
+     * fail the create.
+     */
     @Override
-    public Mono<List<Transaction>> findAllByBill_AccountNumber(String accountNumber) {
-        return repository.findAllByBill_AccountNumber(accountNumber);
+    public Mono<Transaction> create(Transaction transaction) {
+        return billSnapshotService.compact(transaction)
+                .flatMap(super::create)
+                .flatMap(created -> dailyBalanceService.record(created)
+                        .onErrorResume(e -> {
+                            log.warn("DAILY_BALANCE_RECORD_FAILED {}: {}", created.getId(), e.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(created));
+    }
+
+    /**
+     * Every transaction, archived ones included, by id.
+     */
+    @Override
+    public Flux<Transaction> findAll() {
+        return router.find("findAllCompact", new Criteria(), null, null, Sort.by("id"), 0);
+    }
+
+    @Override
+    public Mono<Transaction> findById(String id) {
+        return router.findById(id);
+    }
+
+    @Override
+    public Mono<Transaction> update(Transaction transaction) {
+        return router.save(transaction);
+    }
+
+    @Override
+    public Mono<Void> delete(String id) {
+        return router.deleteById(id);
+    }
+
+    /**
+     * Account history sorted by {@code transactionDate, _id}; the page after a cursor only reads the buckets on its
+     * side of the cursor.
+     */
+    @Override
+    public Flux<Transaction> findAllByBill_AccountNumber(String accountNumber, TransactionCursor after, int limit, Sort.Direction direction) {
+        Sort sort = Sort.by(direction, "transactionDate", "id");
+        Criteria criteria = Criteria.where("account.accountNumber").is(accountNumber);
+        if (after == null) {
+            return router.find("findAllByBill_AccountNumber", criteria, null, null, sort, limit);
+        }
+        LocalDateTime date = after.getTransactionDate();
+        if (direction.isAscending()) {
+            criteria = criteria.orOperator(Criteria.where("transactionDate").gt(date),
+                    Criteria.where("transactionDate").is(date).and("id").gt(after.getMongoId()));
+            return router.find("findAccountPageAfter", criteria, date, null, sort, limit);
+        }
+        criteria = criteria.orOperator(Criteria.where("transactionDate").lt(date),
+                Criteria.where("transactionDate").is(date).and("id").lt(after.getMongoId()));
+        return router.find("findAccountPageBefore", criteria, null, date.plusNanos(1), sort, limit);
     }
 
     @Override
     public Flux<Transaction> findByTransactionDateBetween(LocalDateTime from, LocalDateTime to) {
-        return repository.findByTransactionDateBetween(from, to);
+        return router.findInRange("findByTransactionDateBetween", null, from, false, to);
     }
 
     @Override
     public Flux<Transaction> findByBill_Acquisition_Product_ProductName(String productName) {
-        return repository.findByBill_Acquisition_Product_ProductName(productName);
+        return router.find("findByBill_Acquisition_Product_ProductName", ofProduct(productName), null, null,
+                Sort.by(Sort.Direction.ASC, "transactionDate", "id"), 0);
+    }
+
+    @Override
+    public Flux<DailyBalanceDTO> findDailyLastBalance(String accountNumber, LocalDateTime from, LocalDateTime to, ZoneId zoneId) {
+        return router.findDailyLastBalance(accountNumber, from, to, zoneId);
+    }
+
+    @Override
+    public Flux<Transaction> findByProductNameInRange(String productName, LocalDateTime from, LocalDateTime to) {
+        return router.findInRange("findByProductNameInRange", ofProduct(productName), from, true, to);
+    }
+
+    @Override
+    public Flux<CommissionSummaryDTO> summarizeCommissionByProduct(String productName, LocalDateTime from, LocalDateTime to, ZoneId zoneId) {
+        return router.summarizeCommission(ofProduct(productName), from, to, zoneId);
+    }
+
+    @Override
+    public Flux<Transaction> findTop(LocalDateTime from, LocalDateTime to, String accountNumber, String productName, TransactionOrder order, int limit) {
+        Criteria criteria = Criteria.where("transactionDate").gte(from).lt(to);
+        if (accountNumber != null) {
+            criteria = criteria.and("account.accountNumber").is(accountNumber);
+        }
+        if (productName != null) {
+            criteria = criteria.and("account.acquisition.product.productName").is(productName);
+        }
+        return router.find("findTop", criteria, from, to, order.toSort(), limit);
+    }
+
+    private static Criteria ofProduct(String productName) {
+        return Criteria.where("account.acquisition.product.productName").is(productName);
     }
 
 }
@@ -0,0 +1,131 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.config.TransactionProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs work for the same account one at a time, in submission order, while different accounts proceed in
+ * parallel. Accounts are hashed to a fixed number of lanes ({@code transaction.sequencer.lanes}); a lane runs
+ * one task at a time and never blocks a thread while it waits.
+ * Per lane it publishes {@code transaction.sequencer.queue.depth} and {@code transaction.sequencer.wait}.
+ * <p>
+ * The lanes live in this instance only: two instances behind the load balancer can still run work for the same
+ * account at the same time, so it does not replace an atomic write where the data is shared.
+ */
+@Component
+public class AccountSequencer {
+    private final Lane[] lanes;
+
+    public AccountSequencer(TransactionProperties properties, MeterRegistry registry) {
+        this.lanes = new Lane[properties.getSequencer().getLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, registry);
+        }
+    }
+
+    /**
+     * Subscribes to {@code work} once every task submitted before for a key of the same lane has terminated.
+     */
+    public <T> Mono<T> submit(String accountNumber, Supplier<Mono<T>> work) {
+        Lane lane = lanes[Math.floorMod(Objects.hashCode(accountNumber), lanes.length)];
+        return Mono.create(sink -> lane.enqueue(new Task<>(work, sink)));
+    }
+
+    private static final class Lane {
+        private final Queue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final Timer waitTime;
+
+        private Lane(int index, MeterRegistry registry) {
+            Tags tags = Tags.of("lane", String.valueOf(index));
+            Gauge.builder("transaction.sequencer.queue.depth", depth, AtomicInteger::get)
+                    .description("Tasks waiting for their lane")
+                    .tags(tags)
+                    .register(registry);
+            this.waitTime = Timer.builder("transaction.sequencer.wait")
+                    .description("Time a task waited in its lane before starting")
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        private void enqueue(Task<?> task) {
+            depth.incrementAndGet();
+            queue.offer(task);
+            drain();
+        }
+
+        private void drain() {
+            while (running.compareAndSet(false, true)) {
+                Task<?> task = queue.poll();
+                if (task == null) {
+                    running.set(false);
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                depth.decrementAndGet();
+                waitTime.record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+                if (task.start(this::release)) {
+                    return;
+                }
+                running.set(false);
+            }
+        }
+
+        private void release() {
+            running.set(false);
+            drain();
+        }
+    }
+
+    private static final class Task<T> {
+        private final Supplier<Mono<T>> work;
+        private final MonoSink<T> sink;
+        private final long enqueuedAt = System.nanoTime();
+        private volatile boolean cancelled;
+        private volatile Disposable subscription;
+
+        private Task(Supplier<Mono<T>> work, MonoSink<T> sink) {
+            this.work = work;
+            this.sink = sink;
+            sink.onCancel(() -> {
+                cancelled = true;
+                Disposable current = subscription;
+                if (current != null) {
+                    current.dispose();
+                }
+            });
+        }
+
+        /**
+         * @return false when the subscriber cancelled while the task was queued, the lane moves on immediately
+         */
+        private boolean start(Runnable release) {
+            if (cancelled) {
+                return false;
+            }
+            subscription = Mono.defer(work)
+                    .contextWrite(sink.currentContext())
+                    .doFinally(signal -> release.run())
+                    .subscribe(sink::success, sink::error, sink::success);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mstransaction.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Micro-batches the lookups of single keys: the keys asked for within {@code window} of the first one, up to
+ * {@code maxBatchSize}, are resolved by one call of the batch loader and every caller gets the value of its key.
+ * A key already waiting in an open or in-flight batch is not added again, its callers share the result; values
+ * are copied per subscriber. A key missing from the loaded map completes empty. The batch is sent even if all of its
+ * callers cancelled. Publishes {@code downstream.batch.size} and {@code downstream.batch.deduplicated} tagged with
+ * the lookup name.
+ */
+public class BatchLoader<K, V> {
+    private final Duration window;
+    private final int maxBatchSize;
+    private final UnaryOperator<V> copier;
+    private final DistributionSummary batchSize;
+    private final Counter deduplicated;
+    private final Object lock = new Object();
+    private final Map<K, Sinks.One<V>> waiting = new HashMap<>();
+    private List<K> open;
+    private Disposable openTimer;
+
+    public BatchLoader(String name, Duration window, int maxBatchSize, UnaryOperator<V> copier, MeterRegistry registry) {
+        this.window = window;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.copier = copier;
+        this.batchSize = DistributionSummary.builder("downstream.batch.size")
+                .description("Keys sent in one batch call")
+                .tag("lookup", name)
+                .register(registry);
+        this.deduplicated = Counter.builder("downstream.batch.deduplicated")
+                .description("Lookups that joined a key already waiting in a batch")
+                .tag("lookup", name)
+                .register(registry);
+    }
+
+    public Mono<V> execute(K key, Function<List<K>, Mono<Map<K, V>>> loader) {
+        return Mono.defer(() -> {
+            Sinks.One<V> sink;
+            List<K> full = null;
+            synchronized (lock) {
+                sink = waiting.get(key);
+                if (sink != null) {
+                    deduplicated.increment();
+                } else {
+                    sink = Sinks.one();
+                    waiting.put(key, sink);
+                    if (open == null) {
+                        List<K> batch = new ArrayList<>();
+                        open = batch;
+                        openTimer = Mono.delay(window).subscribe(tick -> dispatchIfOpen(batch, loader));
+                    }
+                    open.add(key);
+                    if (open.size() >= maxBatchSize) {
+                        full = open;
+                        open = null;
+                        openTimer.dispose();
+                    }
+                }
+            }
+            if (full != null) {
+                dispatch(full, loader);
+            }
+            return sink.asMono().map(copier);
+        });
+    }
+
+    private void dispatchIfOpen(List<K> batch, Function<List<K>, Mono<Map<K, V>>> loader) {
+        synchronized (lock) {
+            if (open != batch) {
+                return;
+            }
+            open = null;
+        }
+        dispatch(batch, loader);
+    }
+
+    private void dispatch(List<K> keys, Function<List<K>, Mono<Map<K, V>>> loader) {
+        batchSize.record(keys.size());
+        Mono.defer(() -> loader.apply(Collections.unmodifiableList(keys)))
+                .defaultIfEmpty(Collections.emptyMap())
+                .subscribe(loaded -> complete(keys, loaded, null), e -> complete(keys, null, e));
+    }
+
+    private void complete(List<K> keys, Map<K, V> loaded, Throwable error) {
+        List<Sinks.One<V>> sinks = new ArrayList<>(keys.size());
+        synchronized (lock) {
+            for (K key : keys) {
+                sinks.add(waiting.remove(key));
+            }
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Sinks.One<V> sink = sinks.get(i);
+            V value = loaded == null ? null : loaded.get(keys.get(i));
+            if (error != null) {
+                sink.tryEmitError(error);
+            } else if (value == null) {
+                sink.tryEmitEmpty();
+            } else {
+                sink.tryEmitValue(value);
+            }
+        }
+    }
+}
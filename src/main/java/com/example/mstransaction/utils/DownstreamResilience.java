@@ -0,0 +1,81 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.exception.DownstreamUnavailable;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Circuit breaker, bulkhead, time limiter and retry of the downstream services, one instance of each per service
+ * ({@code bill}, {@code acquisition}, {@code customer}) configured under {@code resilience4j.*.instances.<service>}.
+ * Calls are shed instead of queued: a full bulkhead or an open breaker fails at once, and every unavailability ends
+ * as a {@link DownstreamUnavailable} (503). Business errors of the downstream (4xx) pass through untouched.
+ */
+@Component
+public class DownstreamResilience {
+    private static final TransientDownstreamFailure TRANSIENT = new TransientDownstreamFailure();
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final BulkheadRegistry bulkheads;
+    private final TimeLimiterRegistry timeLimiters;
+    private final RetryRegistry retries;
+
+    public DownstreamResilience(CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads,
+                                TimeLimiterRegistry timeLimiters, RetryRegistry retries) {
+        this.circuitBreakers = circuitBreakers;
+        this.bulkheads = bulkheads;
+        this.timeLimiters = timeLimiters;
+        this.retries = retries;
+    }
+
+    /**
+     * One HTTP call: bulkhead, then timeout, then circuit breaker.
+     */
+    public <T> Function<Mono<T>, Mono<T>> call(String service) {
+        Bulkhead bulkhead = bulkheads.bulkhead(service);
+        TimeLimiter timeLimiter = timeLimiters.timeLimiter(service);
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(service);
+        return mono -> mono
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(TimeLimiterOperator.of(timeLimiter))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+
+    /**
+     * Around the calls of an idempotent read: retries the {@link TransientDownstreamFailure}s with a jittered wait.
+     */
+    public <T> Function<Mono<T>, Mono<T>> read(String service) {
+        Retry retry = retries.retry(service);
+        return mono -> mono
+                .transformDeferred(RetryOperator.of(retry))
+                .onErrorMap(DownstreamResilience::isUnavailable, e -> new DownstreamUnavailable(service, e));
+    }
+
+    /**
+     * A call that must not be repeated: guarded like {@link #call} and never retried.
+     */
+    public <T> Function<Mono<T>, Mono<T>> write(String service) {
+        Function<Mono<T>, Mono<T>> call = call(service);
+        return mono -> mono
+                .transform(call)
+                .onErrorMap(DownstreamResilience::isUnavailable, e -> new DownstreamUnavailable(service, e));
+    }
+
+    private static boolean isUnavailable(Throwable e) {
+        return TRANSIENT.test(e) || e instanceof CallNotPermittedException || e instanceof BulkheadFullException;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.config.DownstreamProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for an idempotent lookup. When the first attempt has not answered after the
+ * {@code hedge-percentile} latency of the lookup, a second attempt is sent; the load balancer sends it to the next
+ * instance. The first attempt to signal wins and the other one is cancelled; a failed hedge never hides the first
+ * attempt. Hedges are paid from a token bucket that earns {@code hedge-budget} tokens per lookup, up to
+ * {@code hedge-burst}, so hedging adds at most that fraction of load to the downstream.
+ * Publishes {@code downstream.hedge} tagged with the lookup name and {@code result} {@code issued}, {@code won} or
+ * {@code rejected} (no budget left).
+ */
+public class Hedger {
+    private static final long TOKEN = 1_000;
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long tokensPerLookup;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+    private final Timer latency;
+    private final Counter issued;
+    private final Counter won;
+    private final Counter rejected;
+    private volatile long delayNanos;
+    private volatile long nextRefresh;
+
+    public Hedger(String name, DownstreamProperties.Client settings, MeterRegistry registry) {
+        this.enabled = settings.isHedgeEnabled();
+        this.percentile = settings.getHedgePercentile();
+        this.minDelayNanos = settings.getHedgeMinDelay().toNanos();
+        this.tokensPerLookup = Math.round(settings.getHedgeBudget() * TOKEN);
+        this.maxTokens = settings.getHedgeBurst() * TOKEN;
+        this.tokens = new AtomicLong(maxTokens);
+        this.delayNanos = minDelayNanos;
+        this.latency = Timer.builder("downstream.hedge.latency")
+                .description("Latency of the answered attempts, source of the hedge delay")
+                .tag("lookup", name)
+                .publishPercentiles(percentile)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(registry);
+        this.issued = counter(registry, name, "issued");
+        this.won = counter(registry, name, "won");
+        this.rejected = counter(registry, name, "rejected");
+    }
+
+    public <T> Mono<T> execute(Supplier<Mono<T>> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        return Mono.defer(() -> {
+            deposit();
+            Mono<T> hedge = Mono.delay(Duration.ofNanos(delay()))
+                    .flatMap(tick -> {
+                        if (!withdraw()) {
+                            rejected.increment();
+                            return Mono.<T>never();
+                        }
+                        issued.increment();
+                        return timed(attempt.get())
+                                .doOnNext(value -> won.increment())
+                                .onErrorResume(e -> Mono.never());
+                    });
+            return Mono.firstWithSignal(timed(attempt.get()), hedge);
+        });
+    }
+
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.doOnNext(value -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private long delay() {
+        long now = System.nanoTime();
+        if (now - nextRefresh >= 0) {
+            nextRefresh = now + DELAY_REFRESH_NANOS;
+            for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                delayNanos = Math.max(minDelayNanos, (long) value.value(TimeUnit.NANOSECONDS));
+            }
+        }
+        return delayNanos;
+    }
+
+    private void deposit() {
+        tokens.accumulateAndGet(tokensPerLookup, (current, added) -> Math.min(maxTokens, current + added));
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    private static Counter counter(MeterRegistry registry, String name, String result) {
+        return Counter.builder("downstream.hedge")
+                .description("Second attempts of a lookup by result")
+                .tag("lookup", name)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Customer;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deep copies of the downstream models. A value that is shared between requests (cached or
+ * coalesced) has to be copied before a handler mutates it.
+ * The copies are made field by field: a cache hit costs a few allocations, not a JSON round trip.
+ * {@link com.example.mstransaction.models.entities.Money} is immutable and shared. The graphs are trees, as they
+ * arrive from the downstream JSON; a field added to one of these models has to be added here too.
+ */
+@Component
+public class ModelCopier {
+
+    public Bill copy(Bill bill) {
+        if (bill == null) {
+            return null;
+        }
+        return Bill.builder()
+                .id(bill.getId())
+                .accountNumber(bill.getAccountNumber())
+                .balance(bill.getBalance())
+                .acquisition(copy(bill.getAcquisition()))
+                .build();
+    }
+
+    public Acquisition copy(Acquisition acquisition) {
+        if (acquisition == null) {
+            return null;
+        }
+        Acquisition copy = new Acquisition();
+        copy.setProduct(copy(acquisition.getProduct()));
+        copy.setCustomerHolder(copy(acquisition.getCustomerHolder()));
+        copy.setCustomerAuthorizedSigner(copy(acquisition.getCustomerAuthorizedSigner()));
+        copy.setIban(acquisition.getIban());
+        copy.setBill(copy(acquisition.getBill()));
+        return copy;
+    }
+
+    public Customer copy(Customer customer) {
+        if (customer == null) {
+            return null;
+        }
+        Customer copy = new Customer();
+        copy.setCustomerIdentityNumber(customer.getCustomerIdentityNumber());
+        return copy;
+    }
+
+    private Product copy(Product product) {
+        if (product == null) {
+            return null;
+        }
+        Product copy = new Product();
+        copy.setProductName(product.getProductName());
+        copy.setProductType(product.getProductType());
+        copy.setRules(copy(product.getRules()));
+        return copy;
+    }
+
+    private static Rules copy(Rules rules) {
+        if (rules == null) {
+            return null;
+        }
+        Rules copy = new Rules();
+        copy.setCustomerType(rules.getCustomerType());
+        copy.setCommissionMaintenance(rules.isCommissionMaintenance());
+        copy.setMaximumLimitMonthlyMovements(rules.isMaximumLimitMonthlyMovements());
+        copy.setMaximumLimitMonthlyMovementsQuantity(rules.getMaximumLimitMonthlyMovementsQuantity());
+        return copy;
+    }
+
+    private List<Customer> copy(List<Customer> customers) {
+        if (customers == null) {
+            return null;
+        }
+        List<Customer> copy = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            copy.add(copy(customer));
+        }
+        return copy;
+    }
+}
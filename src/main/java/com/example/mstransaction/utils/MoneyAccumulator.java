@@ -0,0 +1,72 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.models.entities.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Count, sum, min and max of amounts of one currency, kept as primitive minor units; nothing is allocated per
+ * added amount. Not thread-safe, meant for {@code Flux.collect} or a loop.
+ */
+public class MoneyAccumulator {
+    private final Currency currency;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public MoneyAccumulator() {
+        this(Money.DEFAULT_CURRENCY);
+    }
+
+    public MoneyAccumulator(Currency currency) {
+        this.currency = currency;
+    }
+
+    public MoneyAccumulator add(Money amount) {
+        if (!currency.equals(amount.getCurrency())) {
+            throw new IllegalArgumentException(String.format("Cannot add %s to a %s total", amount.getCurrency(), currency));
+        }
+        long minorUnits = amount.getMinorUnits();
+        count++;
+        sum = Math.addExact(sum, minorUnits);
+        min = Math.min(min, minorUnits);
+        max = Math.max(max, minorUnits);
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Money sum() {
+        return Money.ofMinor(sum, currency);
+    }
+
+    /**
+     * @return {@code null} when nothing was added
+     */
+    public Money min() {
+        return count == 0 ? null : Money.ofMinor(min, currency);
+    }
+
+    /**
+     * @return {@code null} when nothing was added
+     */
+    public Money max() {
+        return count == 0 ? null : Money.ofMinor(max, currency);
+    }
+
+    /**
+     * Mean rounded half-even to the minor unit, zero when nothing was added.
+     */
+    public Money average() {
+        if (count == 0) {
+            return Money.ofMinor(0, currency);
+        }
+        return Money.ofMinor(BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 0, RoundingMode.HALF_EVEN).longValueExact(),
+                currency);
+    }
+}
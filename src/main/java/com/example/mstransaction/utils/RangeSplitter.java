@@ -0,0 +1,85 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.config.TransactionProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Scatter-gather of a date-ranged query. The range is cut into one slice per {@code transaction.split.slice-span},
+ * at most {@code transaction.split.max-slices}, and up to {@code transaction.split.concurrency} slices are queried at
+ * the same time, each from its own cursor. Slices are {@code [start, end)}; the first one starts at {@code from} and
+ * the last one ends at {@code to}.
+ * Publishes {@code transaction.query.slices}, the number of slices of every query, tagged with the query name.
+ */
+@Component
+public class RangeSplitter {
+    public static final String SLICES_SUMMARY = "transaction.query.slices";
+    private final TransactionProperties properties;
+    private final MeterRegistry registry;
+
+    public RangeSplitter(TransactionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    /**
+     * Emits the slices in the order of the range, for queries sorted by date ascending.
+     */
+    public <T> Flux<T> ordered(String query, LocalDateTime from, LocalDateTime to, BiFunction<LocalDateTime, LocalDateTime, Flux<T>> slice) {
+        return Flux.defer(() -> {
+            List<LocalDateTime> bounds = split(query, from, to);
+            return Flux.range(0, bounds.size() - 1)
+                    .flatMapSequential(i -> slice.apply(bounds.get(i), bounds.get(i + 1)), concurrency(bounds));
+        });
+    }
+
+    /**
+     * Emits the results as the slices produce them, for aggregates that do not depend on the order.
+     */
+    public <T> Flux<T> unordered(String query, LocalDateTime from, LocalDateTime to, BiFunction<LocalDateTime, LocalDateTime, Flux<T>> slice) {
+        return Flux.defer(() -> {
+            List<LocalDateTime> bounds = split(query, from, to);
+            return Flux.range(0, bounds.size() - 1)
+                    .flatMap(i -> slice.apply(bounds.get(i), bounds.get(i + 1)), concurrency(bounds));
+        });
+    }
+
+    /**
+     * @return the bounds of the slices, {@code from} first and {@code to} last
+     */
+    private List<LocalDateTime> split(String query, LocalDateTime from, LocalDateTime to) {
+        TransactionProperties.Split split = properties.getSplit();
+        Duration range = from.isBefore(to) ? Duration.between(from, to) : Duration.ZERO;
+        Duration span = split.getSliceSpan();
+        int maxSlices = Math.max(1, split.getMaxSlices());
+        // only a range shorter than maxSlices spans is counted in nanoseconds, a longer one can overflow them
+        int slices = range.compareTo(span.multipliedBy(maxSlices)) >= 0
+                ? maxSlices
+                : (int) Math.max(1, (range.toNanos() + span.toNanos() - 1) / span.toNanos());
+        Duration step = range.dividedBy(slices);
+        List<LocalDateTime> bounds = new ArrayList<>(slices + 1);
+        bounds.add(from);
+        for (int i = 1; i < slices; i++) {
+            bounds.add(from.plus(step.multipliedBy(i)));
+        }
+        bounds.add(to);
+        DistributionSummary.builder(SLICES_SUMMARY)
+                .description("Slices a date-ranged query was split into")
+                .tag("query", query)
+                .register(registry)
+                .record(slices);
+        return bounds;
+    }
+
+    private int concurrency(List<LocalDateTime> bounds) {
+        return Math.max(1, Math.min(bounds.size() - 1, properties.getSplit().getConcurrency()));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.mstransaction.utils;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache for lookups that return a {@link Mono}. Every subscriber receives its own copy
+ * of the cached value, so callers are free to mutate what they get. Empty and failed lookups are not cached.
+ * Hits, misses and evictions are published as {@code cache.*} meters tagged with the cache name.
+ * A maximum size of 0 disables the cache and every lookup goes to the loader.
+ */
+public class ReactiveLookupCache<K, V> {
+    private final AsyncCache<K, V> cache;
+    private final UnaryOperator<V> copier;
+    private final boolean enabled;
+
+    public ReactiveLookupCache(String name, long maximumSize, Duration ttl, UnaryOperator<V> copier, MeterRegistry registry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.copier = copier;
+        this.enabled = maximumSize > 0;
+        new CaffeineCacheMetrics(cache.synchronous(), name, Tags.empty()).bindTo(registry);
+    }
+
+    public Mono<V> get(K key, Function<K, Mono<V>> loader) {
+        if (!enabled) {
+            return loader.apply(key);
+        }
+        // thenApply gives every subscriber its own future: cancelling one subscriber must not cancel the shared load
+        return Mono.defer(() -> Mono.fromFuture(cache.get(key, (k, executor) -> loader.apply(k).toFuture())
+                        .thenApply(Function.identity())))
+                .map(copier);
+    }
+
+    public void invalidate(K key) {
+        if (key != null) {
+            cache.synchronous().invalidate(key);
+        }
+    }
+}
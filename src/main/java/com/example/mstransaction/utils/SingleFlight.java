@@ -0,0 +1,48 @@
+package com.example.mstransaction.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent lookups of the same key: while a call for a key is in flight, later subscribers
+ * share its result instead of issuing their own call. The entry is dropped as soon as the call
+ * terminates, so nothing is served after the response arrived. Shared results are copied per subscriber.
+ * Coalesced subscriptions are counted in {@code downstream.coalesced} tagged with the lookup name.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copier;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, UnaryOperator<V> copier, MeterRegistry registry) {
+        this.copier = copier;
+        this.coalesced = Counter.builder("downstream.coalesced")
+                .description("Lookups that joined a call already in flight for the same key")
+                .tag("lookup", name)
+                .register(registry);
+    }
+
+    public Mono<V> execute(K key, Function<K, Mono<V>> loader) {
+        return Mono.defer(() -> {
+            AtomicReference<Mono<V>> created = new AtomicReference<>();
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                Mono<V> call = loader.apply(k)
+                        .doFinally(signal -> inFlight.remove(k, created.get()))
+                        .share();
+                created.set(call);
+                return call;
+            });
+            if (shared != created.get()) {
+                coalesced.increment();
+            }
+            return shared.map(copier);
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.models.entities.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+
+/**
+ * Keyset position inside the transactions of an account. Serialized as {@code <transactionDate>,<id>},
+ * for example {@code 2021-08-12T10:15:30.125,6115a3f2c1e4a51b2c7d9e10}.
+ */
+@Getter
+@AllArgsConstructor
+public class TransactionCursor {
+    private static final char SEPARATOR = ',';
+    private final LocalDateTime transactionDate;
+    private final String id;
+
+    public static TransactionCursor of(Transaction transaction) {
+        return new TransactionCursor(transaction.getTransactionDate(), transaction.getId());
+    }
+
+    public static TransactionCursor parse(String token) {
+        int separator = token.lastIndexOf(SEPARATOR);
+        if (separator <= 0 || separator == token.length() - 1) {
+            throw new IllegalArgumentException(String.format("The cursor %s is not <transactionDate>,<id>", token));
+        }
+        return new TransactionCursor(LocalDateTime.parse(token.substring(0, separator)), token.substring(separator + 1));
+    }
+
+    /**
+     * Generated ids are stored as ObjectId, so the cursor has to compare against the same type.
+     */
+    public Object getMongoId() {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    @Override
+    public String toString() {
+        return transactionDate.toString() + SEPARATOR + id;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.mstransaction.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Latency timers of the reactive pipelines. The time goes from subscription to termination and every timer
+ * publishes a percentile histogram.
+ * <ul>
+ *     <li>{@code transaction.route.requests}: one request of a {@code RouterConfig} route until the handler returns
+ *     its response, tagged {@code route} (the path pattern), {@code method}, {@code status} and {@code outcome}
+ *     ({@code SUCCESS}, {@code CLIENT_ERROR}...). A request the client cancels is tagged {@code UNKNOWN}. A
+ *     streamed body is not part of the time.</li>
+ *     <li>{@code transaction.downstream.requests}: one call to SERVICE-BILL, SERVICE-ACQUISITION or SERVICE-CUSTOMER,
+ *     tagged {@code service} and {@code method}.</li>
+ *     <li>{@code transaction.save.stage}: one stage of a create, tagged {@code stage}.</li>
+ * </ul>
+ * The last two are applied with {@code Mono.transform} and their {@code outcome} is {@code success}, {@code error}
+ * or {@code cancelled}.
+ */
+@Component
+public class TransactionMetrics {
+    public static final String ROUTE_TIMER = "transaction.route.requests";
+    public static final String DOWNSTREAM_TIMER = "transaction.downstream.requests";
+    public static final String SAVE_STAGE_TIMER = "transaction.save.stage";
+    private final MeterRegistry registry;
+
+    public TransactionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public HandlerFilterFunction<ServerResponse, ServerResponse> routeFilter() {
+        return (request, next) -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicReference<Integer> status = new AtomicReference<>();
+            return next.handle(request)
+                    .doOnSuccess(response -> status.set(response == null ? null : response.rawStatusCode()))
+                    .doOnError(e -> status.set(e instanceof ResponseStatusException
+                            ? ((ResponseStatusException) e).getRawStatusCode() : 500))
+                    .doFinally(signal -> recordRoute(request, signal == SignalType.CANCEL ? null : status.get(), start));
+        });
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> downstream(String service, String method) {
+        return timed(DOWNSTREAM_TIMER, Tags.of("service", service, "method", method));
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> saveStage(String stage) {
+        return timed(SAVE_STAGE_TIMER, Tags.of("stage", stage));
+    }
+
+    private <T> Function<Mono<T>, Mono<T>> timed(String name, Tags tags) {
+        return mono -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal -> timer(name, tags.and("outcome", outcome(signal)))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private void recordRoute(ServerRequest request, Integer status, long start) {
+        String route = request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+                .map(pattern -> ((PathPattern) pattern).getPatternString())
+                .orElse("UNKNOWN");
+        timer(ROUTE_TIMER, Tags.of(
+                "route", route,
+                "method", request.methodName(),
+                "status", status == null ? "UNKNOWN" : String.valueOf(status),
+                "outcome", status == null ? Outcome.UNKNOWN.name() : Outcome.forStatus(status).name()))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static String outcome(SignalType signal) {
+        switch (signal) {
+            case ON_ERROR:
+                return "error";
+            case CANCEL:
+                return "cancelled";
+            default:
+                return "success";
+        }
+    }
+}
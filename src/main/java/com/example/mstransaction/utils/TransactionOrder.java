@@ -0,0 +1,33 @@
+package com.example.mstransaction.utils;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.Locale;
+
+/**
+ * Orderings offered by the top transactions endpoint, always descending. Ties are broken by the most recent
+ * transaction so a ranking is stable between calls.
+ */
+public enum TransactionOrder {
+    RECENT("transactionDate"),
+    AMOUNT("transactionAmount"),
+    COMMISSION("commission");
+
+    private final String field;
+
+    TransactionOrder(String field) {
+        this.field = field;
+    }
+
+    public Sort toSort() {
+        Sort sort = Sort.by(Sort.Direction.DESC, field);
+        if (this != RECENT) {
+            sort = sort.and(Sort.by(Sort.Direction.DESC, "transactionDate"));
+        }
+        return sort.and(Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    public static TransactionOrder parse(String value) {
+        return valueOf(value.toUpperCase(Locale.ROOT));
+    }
+}
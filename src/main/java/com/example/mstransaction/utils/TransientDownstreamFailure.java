@@ -0,0 +1,20 @@
+package com.example.mstransaction.utils;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Downstream failures worth a retry, also the only ones the circuit breakers record: timeouts, connection errors and
+ * 5xx responses. Referenced from the {@code resilience4j} configuration.
+ */
+public class TransientDownstreamFailure implements Predicate<Throwable> {
+    @Override
+    public boolean test(Throwable e) {
+        return e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || (e instanceof WebClientResponseException && ((WebClientResponseException) e).getRawStatusCode() >= 500);
+    }
+}
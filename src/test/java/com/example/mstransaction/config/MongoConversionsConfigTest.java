@@ -0,0 +1,54 @@
+package com.example.mstransaction.config;
+
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Money;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MongoConversionsConfigTest {
+    private MappingMongoConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoConversionsConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+
+    @Test
+    void moneyIsWrittenAsDecimal128AndReadBack() {
+        Bill bill = Bill.builder().accountNumber("1234567890").balance(Money.ofMinor(1250)).build();
+        Document document = new Document();
+
+        converter.write(bill, document);
+
+        assertEquals(new Decimal128(new BigDecimal("12.50")), document.get("balance"));
+        assertEquals(bill, converter.read(Bill.class, document));
+    }
+
+    @Test
+    void legacyNumbersAreRead() {
+        assertEquals(Money.ofMinor(1250), balanceOf(12.5));
+        assertEquals(Money.ofMinor(10), balanceOf(0.1));
+        assertEquals(Money.ofMinor(1200), balanceOf(12));
+        assertEquals(Money.ofMinor(150_000), balanceOf(1500L));
+    }
+
+    private Money balanceOf(Object stored) {
+        return converter.read(Bill.class, new Document("balance", stored)).getBalance();
+    }
+}
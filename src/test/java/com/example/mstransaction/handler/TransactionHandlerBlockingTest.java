@@ -0,0 +1,309 @@
+package com.example.mstransaction.handler;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.exception.MethodArgumentNotValid;
+import com.example.mstransaction.models.dto.CommissionSummaryDTO;
+import com.example.mstransaction.models.dto.DailyBalanceDTO;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.ArchiveCheckpoint;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.DailyBalance;
+import com.example.mstransaction.models.entities.DailyBalanceCoverage;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.repositories.IDailyBalanceRepository;
+import com.example.mstransaction.repositories.ITransactionRepository;
+import com.example.mstransaction.repositories.TransactionBuckets;
+import com.example.mstransaction.repositories.TransactionQueryRouter;
+import com.example.mstransaction.services.AcquisitionService;
+import com.example.mstransaction.services.BillService;
+import com.example.mstransaction.services.BillSnapshotService;
+import com.example.mstransaction.services.CustomerService;
+import com.example.mstransaction.services.DailyBalanceService;
+import com.example.mstransaction.services.ITransactionService;
+import com.example.mstransaction.services.MovementCounterService;
+import com.example.mstransaction.services.TransactionBulkService;
+import com.example.mstransaction.services.TransactionFeedService;
+import com.example.mstransaction.services.TransactionService;
+import com.example.mstransaction.utils.AccountSequencer;
+import com.example.mstransaction.utils.RangeSplitter;
+import com.example.mstransaction.utils.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the handler pipelines on a non-blocking reactor thread. BlockHound is installed by its JUnit platform listener
+ * on every test run, so any blocking call in these paths fails the test; {@code mvn test -Pblockhound} runs only
+ * these tests.
+ */
+@Tag("blockhound")
+class TransactionHandlerBlockingTest {
+    private static final String ACCOUNT_NUMBER = "1234567890";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private ITransactionService transactionService;
+    private BillService billService;
+    private AcquisitionService acquisitionService;
+    private DailyBalanceService dailyBalanceService;
+    private MovementCounterService movementCounterService;
+    private TransactionHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        transactionService = mock(ITransactionService.class);
+        billService = mock(BillService.class);
+        acquisitionService = mock(AcquisitionService.class);
+        dailyBalanceService = mock(DailyBalanceService.class);
+        movementCounterService = mock(MovementCounterService.class);
+        TransactionProperties properties = new TransactionProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        handler = new TransactionHandler(transactionService, billService, acquisitionService, mock(CustomerService.class),
+                properties, new AccountSequencer(properties, registry), mock(TransactionBulkService.class),
+                movementCounterService, dailyBalanceService, new TransactionMetrics(registry),
+                mock(BillSnapshotService.class), mock(TransactionFeedService.class));
+    }
+
+    @Test
+    void averageFromTransactionsDoesNotBlock() {
+        when(dailyBalanceService.findDailyBalances(anyString(), any(), any())).thenReturn(Flux.empty());
+        when(transactionService.findDailyLastBalance(anyString(), any(), any(), any()))
+                .thenReturn(Flux.just(dailyBalance("2021-06-01", 100.0), dailyBalance("2021-06-02", 0.0)));
+
+        ServerRequest request = averageRequest();
+        verifyOk(() -> handler.transactionAverage(request));
+    }
+
+    @Test
+    void averageFromDailyBalanceViewDoesNotBlock() {
+        when(dailyBalanceService.findDailyBalances(anyString(), any(), any()))
+                .thenReturn(Flux.just(dailyBalance("2021-06-01", 100.0)));
+        when(transactionService.findDailyLastBalance(anyString(), any(), any(), any())).thenReturn(Flux.empty());
+        when(acquisitionService.findByBillAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(acquisition()));
+
+        ServerRequest request = averageRequest();
+        verifyOk(() -> handler.transactionAverage(request));
+        verifyOk(() -> handler.transactionAverageV2(request));
+    }
+
+    @Test
+    void averageOfAnInvalidMonthOrZoneIsABadRequest() {
+        ServerRequest badMonth = MockServerRequest.builder()
+                .pathVariable("month", "13")
+                .pathVariable("accountNumber", ACCOUNT_NUMBER)
+                .build();
+        ServerRequest badZone = MockServerRequest.builder()
+                .pathVariable("month", "6")
+                .pathVariable("accountNumber", ACCOUNT_NUMBER)
+                .queryParam("zone", "Mars/Olympus")
+                .build();
+        when(acquisitionService.findByBillAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(acquisition()));
+
+        verifyBadRequest(() -> handler.transactionAverage(badMonth));
+        verifyBadRequest(() -> handler.transactionAverageV2(badZone));
+    }
+
+    /**
+     * The services below the handler are the real ones, only Mongo is stubbed, so the daily balance view, the query
+     * router, its buckets and the range splitter run on the reactor thread too.
+     */
+    @Test
+    void averageAndCommissionSummaryOverTheRealServicesDoNotBlock() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        IDailyBalanceRepository dailyBalanceRepository = mock(IDailyBalanceRepository.class);
+        when(mongoTemplate.getCollectionName(Transaction.class)).thenReturn("transaction");
+        when(mongoTemplate.getCollectionNames()).thenReturn(Flux.just("transaction", "transaction_2021_06"));
+        when(mongoTemplate.findById(anyString(), eq(DailyBalanceCoverage.class)))
+                .thenReturn(Mono.empty(), Mono.just(coverage("2021-01-01")));
+        when(dailyBalanceRepository.findByAccountNumberInRange(eq(ACCOUNT_NUMBER), anyString(), anyString()))
+                .thenReturn(Flux.just(snapshot("2021-06-01", 10_000)));
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(Document.class)))
+                .thenAnswer(invocation -> Flux.just(new Document("_id", "2021-06-01").append("balance", new Decimal128(100))
+                        .append("lastTransactionDate", new Date())));
+        when(mongoTemplate.findById(ArchiveCheckpoint.TRANSACTION, ArchiveCheckpoint.class)).thenReturn(Mono.empty());
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(CommissionSummaryDTO.class)))
+                .thenAnswer(invocation -> Flux.just(commissionSummary("2021-06-01")));
+        TransactionHandler handler = handlerOver(mongoTemplate, dailyBalanceRepository);
+
+        ServerRequest average = averageRequest();
+        ServerRequest summary = MockServerRequest.builder()
+                .pathVariable("productName", "AHORRO")
+                .pathVariable("period", "31")
+                .pathVariable("dateInit", "2021-06-01")
+                .build();
+        // from the transactions first, then from the daily balance view once it covers the month
+        verifyOk(() -> handler.transactionAverage(average));
+        verifyOk(() -> handler.transactionAverage(average));
+        verifyOk(() -> handler.generateCommissionSummaryPerProductInRange(summary));
+    }
+
+    @Test
+    void accountPageDoesNotBlock() {
+        when(billService.findByAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(Bill.builder().accountNumber(ACCOUNT_NUMBER).build()));
+        when(transactionService.findAllByBill_AccountNumber(eq(ACCOUNT_NUMBER), any(), anyInt(), any()))
+                .thenReturn(Flux.just(new Transaction()));
+
+        ServerRequest request = MockServerRequest.builder()
+                .pathVariable("accountNumber", ACCOUNT_NUMBER)
+                .build();
+        verifyOk(() -> handler.findAllByAccountNumber(request));
+    }
+
+    @Test
+    void logTraceResponseDoesNotBlock() {
+        Logger logger = mock(Logger.class);
+        when(logger.isTraceEnabled()).thenReturn(true);
+        ClientResponse billResponse = errorResponse();
+        ClientResponse acquisitionResponse = errorResponse();
+        ClientResponse customerResponse = errorResponse();
+
+        StepVerifier.create(Mono.fromRunnable(() -> {
+                            BillService.logTraceResponse(logger, billResponse);
+                            AcquisitionService.logTraceResponse(logger, acquisitionResponse);
+                            CustomerService.logTraceResponse(logger, customerResponse);
+                        })
+                        .subscribeOn(Schedulers.parallel()))
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void blockingCallIsDetected() {
+        Assumptions.assumeTrue(isPresent("reactor.blockhound.BlockHound"), "BlockHound is not on the test classpath");
+
+        StepVerifier.create(Mono.delay(Duration.ofMillis(1))
+                        .doOnNext(tick -> sleep()))
+                .expectErrorMatches(e -> e.getClass().getName().equals("reactor.blockhound.BlockingOperationError"))
+                .verify(TIMEOUT);
+    }
+
+    /**
+     * Requests and responses are built on the test thread: the first build initializes the codecs, which reads a
+     * jar, and that class initialization is not what these tests are about.
+     */
+    private static void verifyOk(Supplier<Mono<ServerResponse>> response) {
+        StepVerifier.create(Mono.defer(response).subscribeOn(Schedulers.parallel()))
+                .expectNextMatches(serverResponse -> serverResponse.statusCode() == HttpStatus.OK)
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    private static void verifyBadRequest(Supplier<Mono<ServerResponse>> response) {
+        StepVerifier.create(Mono.defer(response).subscribeOn(Schedulers.parallel()))
+                .expectErrorMatches(e -> e instanceof MethodArgumentNotValid
+                        && ((MethodArgumentNotValid) e).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify(TIMEOUT);
+    }
+
+    private TransactionHandler handlerOver(ReactiveMongoTemplate mongoTemplate, IDailyBalanceRepository dailyBalanceRepository) {
+        TransactionProperties properties = new TransactionProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransactionQueryRouter router = new TransactionQueryRouter(mongoTemplate,
+                new TransactionBuckets(mongoTemplate, new MongoMappingContext(), properties), new RangeSplitter(properties, registry));
+        DailyBalanceService dailyBalances = new DailyBalanceService(dailyBalanceRepository, mongoTemplate, router, properties);
+        TransactionService transactions = new TransactionService(mock(ITransactionRepository.class), dailyBalances,
+                mock(BillSnapshotService.class), router);
+        return new TransactionHandler(transactions, billService, acquisitionService, mock(CustomerService.class),
+                properties, new AccountSequencer(properties, registry), mock(TransactionBulkService.class),
+                movementCounterService, dailyBalances, new TransactionMetrics(registry),
+                mock(BillSnapshotService.class), mock(TransactionFeedService.class));
+    }
+
+    private static ServerRequest averageRequest() {
+        return MockServerRequest.builder()
+                .pathVariable("month", "6")
+                .pathVariable("accountNumber", ACCOUNT_NUMBER)
+                .queryParam("year", "2021")
+                .build();
+    }
+
+    private static ClientResponse errorResponse() {
+        return ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("{\"message\":\"error\"}")
+                .build();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DailyBalanceDTO dailyBalance(String day, Double balance) {
+        DailyBalanceDTO dailyBalance = new DailyBalanceDTO();
+        dailyBalance.setDay(day);
+        dailyBalance.setBalance(Money.of(balance));
+        return dailyBalance;
+    }
+
+    private static CommissionSummaryDTO commissionSummary(String day) {
+        CommissionSummaryDTO summary = new CommissionSummaryDTO();
+        summary.setDay(day);
+        summary.setCount(1L);
+        summary.setCommissionTotal(Money.ofMinor(250));
+        return summary;
+    }
+
+    private static DailyBalanceCoverage coverage(String coveredFrom) {
+        DailyBalanceCoverage coverage = new DailyBalanceCoverage();
+        coverage.setCoveredFrom(coveredFrom);
+        return coverage;
+    }
+
+    private static DailyBalance snapshot(String date, long minorUnits) {
+        DailyBalance snapshot = new DailyBalance();
+        snapshot.setAccountNumber(ACCOUNT_NUMBER);
+        snapshot.setDate(date);
+        snapshot.setBalance(Money.ofMinor(minorUnits));
+        return snapshot;
+    }
+
+    private static Acquisition acquisition() {
+        Product product = new Product();
+        product.setProductName("AHORRO");
+        product.setRules(new Rules());
+        Acquisition acquisition = new Acquisition();
+        acquisition.setProduct(product);
+        return acquisition;
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.mstransaction.handler;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.exception.MethodArgumentNotValid;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.MovementCounter;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.services.AcquisitionService;
+import com.example.mstransaction.services.BillService;
+import com.example.mstransaction.services.BillSnapshotService;
+import com.example.mstransaction.services.CustomerService;
+import com.example.mstransaction.services.DailyBalanceService;
+import com.example.mstransaction.services.ITransactionService;
+import com.example.mstransaction.services.MovementCounterService;
+import com.example.mstransaction.services.TransactionBulkService;
+import com.example.mstransaction.services.TransactionFeedService;
+import com.example.mstransaction.utils.AccountSequencer;
+import com.example.mstransaction.utils.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionHandlerTest {
+    private static final String ACCOUNT_NUMBER = "1234567890";
+    private ITransactionService transactionService;
+    private BillService billService;
+    private AcquisitionService acquisitionService;
+    private MovementCounterService movementCounterService;
+    private TransactionProperties properties;
+    private TransactionHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        transactionService = mock(ITransactionService.class);
+        billService = mock(BillService.class);
+        acquisitionService = mock(AcquisitionService.class);
+        movementCounterService = mock(MovementCounterService.class);
+        properties = new TransactionProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        handler = new TransactionHandler(transactionService, billService, acquisitionService,
+                mock(CustomerService.class), properties, new AccountSequencer(properties, registry),
+                mock(TransactionBulkService.class), movementCounterService, mock(DailyBalanceService.class),
+                new TransactionMetrics(registry), mock(BillSnapshotService.class), mock(TransactionFeedService.class));
+    }
+
+    @Test
+    void createThatOverflowsTheBalanceIsABadRequestAndReleasesTheMovement() {
+        MovementCounter counter = new MovementCounter();
+        counter.setCount(1L);
+        when(acquisitionService.findByBillAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(acquisition()));
+        when(movementCounterService.increment(eq(ACCOUNT_NUMBER), eq(1), any())).thenReturn(Mono.just(counter));
+        when(movementCounterService.commission(1L)).thenReturn(Money.zero());
+        when(movementCounterService.release(counter, 1)).thenReturn(Mono.empty());
+        when(billService.findLatestByAccountNumber(ACCOUNT_NUMBER))
+                .thenReturn(Mono.just(Bill.builder().accountNumber(ACCOUNT_NUMBER).balance(Money.ofMinor(Long.MAX_VALUE)).build()));
+        Transaction deposit = new Transaction();
+        deposit.setTransactionType("DEPOSIT");
+        deposit.setTransactionAmount(Money.ofMinor(1));
+        deposit.setBill(Bill.builder().accountNumber(ACCOUNT_NUMBER).build());
+
+        verifyBadRequest(handler.save(MockServerRequest.builder().body(Mono.just(deposit))));
+        verify(movementCounterService).release(counter, 1);
+        verify(transactionService, never()).create(any());
+    }
+
+    @Test
+    void transactionsBetweenDatesOfAnAbsurdPeriodIsABadRequest() {
+        verifyBadRequest(handler.transactionBetweenDates(betweenRequest(String.valueOf(properties.getReport().getMaxBetweenDays() + 1))));
+        verifyBadRequest(handler.transactionBetweenDates(betweenRequest("-3000000")));
+        verifyBadRequest(handler.transactionBetweenDates(betweenRequest("99999999999")));
+        verify(transactionService, never()).findByTransactionDateBetween(any(), any());
+    }
+
+    @Test
+    void transactionsBetweenDatesOfTheLongestPeriodAreListed() {
+        LocalDateTime from = LocalDateTime.of(2021, 8, 12, 0, 0);
+        LocalDateTime to = from.plusDays(properties.getReport().getMaxBetweenDays());
+        when(transactionService.findByTransactionDateBetween(from, to)).thenReturn(Flux.just(new Transaction()));
+
+        StepVerifier.create(handler.transactionBetweenDates(betweenRequest(String.valueOf(properties.getReport().getMaxBetweenDays()))))
+                .expectNextMatches(response -> response.statusCode() == HttpStatus.OK)
+                .verifyComplete();
+    }
+
+    private static void verifyBadRequest(Mono<ServerResponse> response) {
+        StepVerifier.create(response)
+                .expectErrorMatches(e -> e instanceof MethodArgumentNotValid
+                        && ((MethodArgumentNotValid) e).getStatus() == HttpStatus.BAD_REQUEST)
+                .verify();
+    }
+
+    private static Acquisition acquisition() {
+        Product product = new Product();
+        product.setProductName("AHORRO");
+        product.setRules(new Rules());
+        Acquisition acquisition = new Acquisition();
+        acquisition.setProduct(product);
+        return acquisition;
+    }
+
+    private static ServerRequest betweenRequest(String periodDay) {
+        return MockServerRequest.builder()
+                .pathVariable("periodDay", periodDay)
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mstransaction.models.entities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void jsonIsAPlainNumberInMajorUnits() throws Exception {
+        Bill bill = Bill.builder().balance(Money.ofMinor(1250)).build();
+
+        String json = mapper.writeValueAsString(bill);
+
+        assertEquals("{\"balance\":12.50}", json);
+        assertEquals(bill, mapper.readValue(json, Bill.class));
+    }
+
+    @Test
+    void jsonAcceptsStringsAndRoundsHalfEven() throws Exception {
+        assertEquals(Money.ofMinor(1250), mapper.readValue("\" 12.5 \"", Money.class));
+        assertEquals(Money.ofMinor(12), mapper.readValue("0.125", Money.class));
+        assertEquals(Money.ofMinor(14), mapper.readValue("0.135", Money.class));
+        assertNull(mapper.readValue("\"\"", Money.class));
+    }
+
+    @Test
+    void jsonOutOfRangeIsAnInvalidValue() {
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("1e18", Money.class));
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("\"1e18\"", Money.class));
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("\"12,50\"", Money.class));
+    }
+
+    @Test
+    void doublesAreReadThroughTheirShortestForm() {
+        assertEquals(10, Money.of(0.1).getMinorUnits());
+        assertEquals(Money.ofMinor(30), Money.of(0.1).plus(Money.of(0.2)));
+        assertEquals(Money.ofMinor(1250), Money.of((Number) 12.5));
+        assertEquals(Money.ofMinor(1200), Money.of((Number) 12L));
+        assertNull(Money.of((Number) null));
+    }
+
+    @Test
+    void arithmeticOverflowFails() {
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1e18")));
+    }
+}
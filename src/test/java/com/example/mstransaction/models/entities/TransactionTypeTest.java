@@ -0,0 +1,33 @@
+package com.example.mstransaction.models.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionTypeTest {
+    private static final Money STORED = Money.ofMinor(10_000);
+    private static final Money AMOUNT = Money.ofMinor(2_500);
+    private static final Money REQUESTED = Money.ofMinor(99_900);
+
+    @Test
+    void knownTypesMoveTheStoredBalanceWhateverTheClientSent() {
+        assertEquals(Money.ofMinor(12_500), TransactionType.balanceAfter("DEPOSIT", STORED, AMOUNT, REQUESTED));
+        assertEquals(Money.ofMinor(7_500), TransactionType.balanceAfter(" retire ", STORED, AMOUNT, REQUESTED));
+    }
+
+    @Test
+    void otherTypesKeepTheBalanceTheClientSent() {
+        assertEquals(REQUESTED, TransactionType.balanceAfter("TRANSFER", STORED, AMOUNT, REQUESTED));
+        assertEquals(REQUESTED, TransactionType.balanceAfter(null, STORED, null, REQUESTED));
+        assertEquals(STORED, TransactionType.balanceAfter("TRANSFER", STORED, AMOUNT, null));
+    }
+
+    @Test
+    void typeIsMatchedIgnoringCaseAndBlanks() {
+        assertEquals(Optional.of(TransactionType.DEPOSIT), TransactionType.of(" Deposit"));
+        assertEquals(Optional.empty(), TransactionType.of("TRANSFER"));
+        assertEquals(Optional.empty(), TransactionType.of(null));
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.mstransaction.repositories;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.dto.CommissionSummaryDTO;
+import com.example.mstransaction.models.entities.ArchiveCheckpoint;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.utils.RangeSplitter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionQueryRouterTest {
+    private static final String LIVE = "transaction";
+    private static final String BUCKET = "transaction_2021_05";
+    private static final LocalDateTime FROM = LocalDateTime.of(2021, 5, 1, 0, 0);
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "transactionDate", "id");
+    private ReactiveMongoTemplate mongoTemplate;
+    private TransactionBuckets buckets;
+    private TransactionQueryRouter router;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        buckets = mock(TransactionBuckets.class);
+        when(buckets.overlapping(any(), any())).thenReturn(Mono.just(Arrays.asList(LIVE, BUCKET)));
+        when(buckets.live()).thenReturn(LIVE);
+        router = new TransactionQueryRouter(mongoTemplate, buckets, new RangeSplitter(new TransactionProperties(), new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void sourcesAreMergedInQueryOrderAndACopyInTwoCollectionsIsKeptOnce() {
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class), eq(LIVE)))
+                .thenReturn(Flux.just(transaction("4", 20), transaction("2", 10)));
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class), eq(BUCKET)))
+                .thenReturn(Flux.just(transaction("3", 15), transaction("2", 10), transaction("1", 5)));
+
+        StepVerifier.create(router.find("test", new Criteria(), FROM, FROM.plusMonths(1), NEWEST_FIRST, 0).map(Transaction::getId))
+                .expectNext("4", "3", "2", "1")
+                .verifyComplete();
+    }
+
+    @Test
+    void everySourceIsLimitedAndSoIsTheMerge() {
+        when(mongoTemplate.find(any(Query.class), eq(Transaction.class), anyString()))
+                .thenReturn(Flux.just(transaction("4", 20), transaction("2", 10)), Flux.just(transaction("3", 15), transaction("1", 5)));
+
+        StepVerifier.create(router.find("test", new Criteria(), FROM, FROM.plusMonths(1), NEWEST_FIRST, 2).map(Transaction::getId))
+                .expectNext("4", "3")
+                .verifyComplete();
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(queries.capture(), eq(Transaction.class), eq(LIVE));
+        assertEquals(2, queries.getValue().getLimit());
+        assertEquals("test", queries.getValue().getMeta().getComment());
+    }
+
+    @Test
+    void commissionTotalsOfADayAreCombinedAcrossSlicesAndBuckets() {
+        when(mongoTemplate.findById(ArchiveCheckpoint.TRANSACTION, ArchiveCheckpoint.class)).thenReturn(Mono.just(checkpoint()));
+        AtomicInteger calls = new AtomicInteger();
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(CommissionSummaryDTO.class))).thenAnswer(invocation -> {
+            int call = calls.incrementAndGet();
+            return call == 1
+                    ? Flux.just(summary("2021-05-03", call), summary("2021-05-10", call))
+                    : Flux.just(summary("2021-05-03", call));
+        });
+
+        // ten days are two slices, each aggregated in both collections
+        StepVerifier.create(router.summarizeCommission(new Criteria(), FROM, FROM.plusDays(10), ZoneId.of("America/Bogota")))
+                .assertNext(day -> {
+                    assertEquals("2021-05-03", day.getDay());
+                    assertEquals(4, day.getCount());
+                    assertEquals(Money.ofMinor(100 + 200 + 300 + 400), day.getCommissionTotal());
+                    assertEquals(Money.ofMinor(100), day.getCommissionMin());
+                    assertEquals(Money.ofMinor(400), day.getCommissionMax());
+                })
+                .assertNext(day -> assertEquals("2021-05-10", day.getDay()))
+                .verifyComplete();
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void commissionIsSplitAtTheCheckpointSoACopyBeingArchivedIsCountedOnce() {
+        when(mongoTemplate.findById(ArchiveCheckpoint.TRANSACTION, ArchiveCheckpoint.class)).thenReturn(Mono.just(checkpoint()));
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(CommissionSummaryDTO.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(router.summarizeCommission(new Criteria(), FROM, FROM.plusDays(1), ZoneId.of("America/Bogota")))
+                .verifyComplete();
+        assertEquals("$gt", tierOperator(LIVE));
+        assertEquals("$lte", tierOperator(BUCKET));
+    }
+
+    @Test
+    void withoutACheckpointOnlyTheLiveCollectionIsSummarized() {
+        when(mongoTemplate.findById(ArchiveCheckpoint.TRANSACTION, ArchiveCheckpoint.class)).thenReturn(Mono.empty());
+        when(mongoTemplate.aggregate(any(Aggregation.class), anyString(), eq(CommissionSummaryDTO.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(router.summarizeCommission(new Criteria(), FROM, FROM.plusDays(1), ZoneId.of("America/Bogota")))
+                .verifyComplete();
+        verify(mongoTemplate).aggregate(any(Aggregation.class), eq(LIVE), eq(CommissionSummaryDTO.class));
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(BUCKET), eq(CommissionSummaryDTO.class));
+    }
+
+    @Test
+    void idIsLookedUpInTheLiveCollectionFirstThenInTheBuckets() {
+        when(mongoTemplate.findOne(any(Query.class), eq(Transaction.class), eq(LIVE))).thenReturn(Mono.empty());
+        when(mongoTemplate.findOne(any(Query.class), eq(Transaction.class), eq(BUCKET))).thenReturn(Mono.just(transaction("1", 5)));
+
+        StepVerifier.create(router.findById("1").map(Transaction::getId))
+                .expectNext("1")
+                .verifyComplete();
+    }
+
+    @Test
+    void updateReplacesEveryStoredCopyAndInsertsWhenThereIsNone() {
+        Transaction archived = transaction("1", 5);
+        when(mongoTemplate.exists(any(Query.class), eq(Transaction.class), eq(LIVE))).thenReturn(Mono.just(false));
+        when(mongoTemplate.exists(any(Query.class), eq(Transaction.class), eq(BUCKET))).thenReturn(Mono.just(true));
+        when(mongoTemplate.save(eq(archived), anyString())).thenReturn(Mono.just(archived));
+
+        StepVerifier.create(router.save(archived))
+                .expectNext(archived)
+                .verifyComplete();
+        verify(mongoTemplate).save(archived, BUCKET);
+        verify(mongoTemplate, never()).save(archived, LIVE);
+
+        when(mongoTemplate.exists(any(Query.class), eq(Transaction.class), eq(BUCKET))).thenReturn(Mono.just(false));
+        StepVerifier.create(router.save(archived))
+                .expectNext(archived)
+                .verifyComplete();
+        verify(mongoTemplate).save(archived, LIVE);
+    }
+
+    @Test
+    void dayFoundInTwoCollectionsKeepsTheBalanceOfItsLatestTransaction() {
+        LocalDateTime morning = FROM.withHour(9);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(BUCKET), eq(Document.class)))
+                .thenReturn(Flux.just(last("2021-05-01", 100, morning.plusHours(3)), last("2021-05-02", 200, morning.plusDays(1))));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LIVE), eq(Document.class)))
+                .thenReturn(Flux.just(last("2021-05-01", 300, morning)));
+
+        StepVerifier.create(router.findDailyLastBalance("1234567890", FROM, FROM.plusMonths(1), ZoneId.of("America/Lima")))
+                .assertNext(day -> assertEquals(Money.ofMinor(10_000), day.getBalance()))
+                .assertNext(day -> assertEquals("2021-05-02", day.getDay()))
+                .verifyComplete();
+    }
+
+    private static Document last(String key, long balance, LocalDateTime lastTransactionDate) {
+        return new Document("_id", key)
+                .append("balance", new Decimal128(balance))
+                .append("lastTransactionDate", Date.from(lastTransactionDate.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    private static Transaction transaction(String id, int day) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setTransactionDate(FROM.plusDays(day));
+        return transaction;
+    }
+
+    private static CommissionSummaryDTO summary(String day, int call) {
+        CommissionSummaryDTO summary = new CommissionSummaryDTO();
+        summary.setDay(day);
+        summary.setCount(1L);
+        summary.setCommissionTotal(Money.ofMinor(100L * call));
+        summary.setCommissionMin(Money.ofMinor(100L * call));
+        summary.setCommissionMax(Money.ofMinor(100L * call));
+        return summary;
+    }
+
+    private static ArchiveCheckpoint checkpoint() {
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint();
+        checkpoint.setLastTransactionDate(FROM.plusHours(12));
+        checkpoint.setLastId(new ObjectId("60f1c7e2a4b5c6d7e8f90123"));
+        return checkpoint;
+    }
+
+    /**
+     * Operator on {@code _id} of the checkpoint tie in the {@code $match} sent to {@code collection}.
+     */
+    @SuppressWarnings("unchecked")
+    private String tierOperator(String collection) {
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq(collection), eq(CommissionSummaryDTO.class));
+        Document match = (Document) aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$match");
+        List<Document> and = (List<Document>) match.get("$and");
+        List<Document> tier = (List<Document>) and.get(2).get("$or");
+        return ((Document) tier.get(1).get("_id")).keySet().iterator().next();
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.mstransaction.services;
+
+import com.example.mstransaction.config.TransactionProperties;
+import com.example.mstransaction.models.dto.BulkItemResultDTO;
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.MovementCounter;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import com.example.mstransaction.models.entities.Transaction;
+import com.example.mstransaction.repositories.ITransactionRepository;
+import com.example.mstransaction.utils.AccountSequencer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionBulkServiceTest {
+    private static final String ACCOUNT_NUMBER = "1234567890";
+    private ITransactionRepository repository;
+    private BillService billService;
+    private AcquisitionService acquisitionService;
+    private MovementCounterService movementCounterService;
+    private MovementCounter counter;
+    private TransactionBulkService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ITransactionRepository.class);
+        billService = mock(BillService.class);
+        acquisitionService = mock(AcquisitionService.class);
+        movementCounterService = mock(MovementCounterService.class);
+        DailyBalanceService dailyBalanceService = mock(DailyBalanceService.class);
+        BillSnapshotService billSnapshotService = mock(BillSnapshotService.class);
+        TransactionProperties properties = new TransactionProperties();
+        // the movements are the 5th, 6th and 7th of the month; from the 6th on they pay 2.50
+        counter = new MovementCounter();
+        counter.setId(ACCOUNT_NUMBER);
+        counter.setCount(7L);
+        when(movementCounterService.increment(eq(ACCOUNT_NUMBER), eq(3), any())).thenReturn(Mono.just(counter));
+        when(movementCounterService.commission(anyLong()))
+                .thenAnswer(invocation -> (long) invocation.getArgument(0) > 5 ? Money.ofMinor(250) : Money.zero());
+        when(movementCounterService.release(any(), anyInt())).thenReturn(Mono.empty());
+        when(billService.findLatestByAccountNumber(ACCOUNT_NUMBER))
+                .thenReturn(Mono.fromSupplier(() -> Bill.builder().accountNumber(ACCOUNT_NUMBER).balance(Money.ofMinor(10_000)).build()));
+        when(repository.updateBalances(any())).thenReturn(Mono.empty());
+        when(billSnapshotService.compactAll(any())).thenReturn(Mono.empty());
+        when(dailyBalanceService.record(any())).thenReturn(Mono.empty());
+        service = new TransactionBulkService(repository, billService, acquisitionService,
+                new AccountSequencer(properties, new SimpleMeterRegistry()), movementCounterService,
+                dailyBalanceService, billSnapshotService, properties);
+    }
+
+    @Test
+    void rowsAfterARejectedOneAreRenumberedAndRebalanced() {
+        when(acquisitionService.findByBillAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(acquisition(new Rules())));
+        when(repository.insertUnordered(any())).thenReturn(Mono.just(Collections.singletonMap(0, "duplicate key")));
+        when(billService.updateBill(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        List<BulkItemResultDTO> results = ingest();
+
+        assertEquals(Arrays.asList(BulkItemResultDTO.FAILED, BulkItemResultDTO.CREATED, BulkItemResultDTO.CREATED), statuses(results));
+        // 100.00 + 20.00 as the 5th movement, then - 5.00 - 2.50 as the 6th
+        List<Transaction> rewritten = rewritten();
+        assertEquals(2, rewritten.size());
+        assertEquals(Money.zero(), rewritten.get(0).getCommission());
+        assertEquals(Money.ofMinor(12_000), rewritten.get(0).getBill().getBalance());
+        assertEquals(Money.ofMinor(250), rewritten.get(1).getCommission());
+        assertEquals(Money.ofMinor(11_250), rewritten.get(1).getBill().getBalance());
+        ArgumentCaptor<Bill> bill = ArgumentCaptor.forClass(Bill.class);
+        verify(billService).updateBill(bill.capture());
+        assertEquals(Money.ofMinor(11_250), bill.getValue().getBalance());
+        verify(movementCounterService).release(counter, 1);
+    }
+
+    @Test
+    void failedBillUpdateIsReportedOnTheInsertedRows() {
+        when(acquisitionService.findByBillAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(acquisition(new Rules())));
+        when(repository.insertUnordered(any())).thenReturn(Mono.just(Collections.emptyMap()));
+        when(billService.updateBill(any())).thenReturn(Mono.error(new RuntimeException("THE BILL UPDATE FAILED")));
+
+        List<BulkItemResultDTO> results = ingest();
+
+        assertEquals(Arrays.asList(BulkItemResultDTO.UNSETTLED, BulkItemResultDTO.UNSETTLED, BulkItemResultDTO.UNSETTLED), statuses(results));
+        assertEquals("THE BILL WAS NOT UPDATED: THE BILL UPDATE FAILED", results.get(0).getError());
+        verify(repository).updateBalances(Collections.emptyList());
+        verify(movementCounterService, never()).release(any(), eq(3));
+    }
+
+    @Test
+    void productWithoutRulesReleasesTheReservedMovements() {
+        when(acquisitionService.findByBillAccountNumber(ACCOUNT_NUMBER)).thenReturn(Mono.just(acquisition(null)));
+
+        List<BulkItemResultDTO> results = ingest();
+
+        assertEquals(Arrays.asList(BulkItemResultDTO.FAILED, BulkItemResultDTO.FAILED, BulkItemResultDTO.FAILED), statuses(results));
+        verify(movementCounterService).release(counter, 3);
+        verify(repository, never()).insertUnordered(any());
+    }
+
+    private List<BulkItemResultDTO> ingest() {
+        return service.ingest(Flux.just(movement("DEPOSIT", 1_000), movement("DEPOSIT", 2_000), movement("RETIRE", 500)))
+                .collectList()
+                .block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Transaction> rewritten() {
+        ArgumentCaptor<List<Transaction>> rewritten = ArgumentCaptor.forClass(List.class);
+        verify(repository).updateBalances(rewritten.capture());
+        return rewritten.getValue();
+    }
+
+    private static List<String> statuses(List<BulkItemResultDTO> results) {
+        results.sort((a, b) -> Long.compare(a.getIndex(), b.getIndex()));
+        String[] statuses = new String[results.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = results.get(i).getStatus();
+        }
+        return Arrays.asList(statuses);
+    }
+
+    private static Transaction movement(String type, long minorUnits) {
+        Transaction movement = new Transaction();
+        movement.setTransactionType(type);
+        movement.setTransactionAmount(Money.ofMinor(minorUnits));
+        movement.setBill(Bill.builder().accountNumber(ACCOUNT_NUMBER).build());
+        return movement;
+    }
+
+    private static Acquisition acquisition(Rules rules) {
+        Product product = new Product();
+        product.setProductName("AHORRO");
+        product.setRules(rules);
+        Acquisition acquisition = new Acquisition();
+        acquisition.setProduct(product);
+        return acquisition;
+    }
+}
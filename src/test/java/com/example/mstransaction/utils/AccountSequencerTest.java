@@ -0,0 +1,111 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.config.TransactionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountSequencerTest {
+    /** With two lanes "a" (hash 97) and "b" (hash 98) are in different lanes. */
+    private static final String A = "a";
+    private static final String B = "b";
+    private AccountSequencer sequencer;
+
+    @BeforeEach
+    void setUp() {
+        TransactionProperties properties = new TransactionProperties();
+        properties.getSequencer().setLanes(2);
+        sequencer = new AccountSequencer(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sameLaneWaitsForThePreviousTaskAndOtherLanesDoNot() {
+        Sinks.One<String> gate = Sinks.one();
+        List<String> started = new CopyOnWriteArrayList<>();
+        Mono<String> first = sequencer.submit(A, () -> started(started, "a1", gate.asMono()));
+        Mono<String> second = sequencer.submit(A, () -> started(started, "a2", Mono.just("a2")));
+        Mono<String> other = sequencer.submit(B, () -> started(started, "b", Mono.just("b")));
+
+        StepVerifier.create(Flux.merge(first, second, other))
+                .expectNext("b")
+                .then(() -> {
+                    assertEquals(Arrays.asList("a1", "b"), started);
+                    gate.tryEmitValue("a1");
+                })
+                .expectNext("a1", "a2")
+                .verifyComplete();
+    }
+
+    @Test
+    void tasksRunInSubmissionOrderWhateverTheirDuration() {
+        StepVerifier.withVirtualTime(() -> Flux.merge(
+                        sequencer.submit(A, () -> Mono.delay(Duration.ofMillis(30)).thenReturn("slow")),
+                        sequencer.submit(A, () -> Mono.delay(Duration.ofMillis(10)).thenReturn("fast"))))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(30))
+                .expectNext("slow")
+                .expectNoEvent(Duration.ofMillis(10))
+                .expectNext("fast")
+                .verifyComplete();
+    }
+
+    @Test
+    void failedTaskReleasesTheLane() {
+        StepVerifier.create(Flux.mergeDelayError(1,
+                        sequencer.submit(A, () -> Mono.error(new IllegalStateException("failed"))),
+                        sequencer.submit(A, () -> Mono.just("next"))))
+                .expectNext("next")
+                .verifyErrorMessage("failed");
+    }
+
+    @Test
+    void taskCancelledWhileQueuedNeverRuns() {
+        Sinks.One<String> gate = Sinks.one();
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        sequencer.submit(A, gate::asMono).subscribe();
+        Disposable cancelled = sequencer.submit(A, () -> {
+            cancelledRan.set(true);
+            return Mono.just("cancelled");
+        }).subscribe();
+        Mono<String> last = sequencer.submit(A, () -> Mono.just("last"));
+        cancelled.dispose();
+
+        StepVerifier.create(last)
+                .then(() -> gate.tryEmitValue("first"))
+                .expectNext("last")
+                .verifyComplete();
+        assertFalse(cancelledRan.get());
+    }
+
+    @Test
+    void cancellingTheRunningTaskReleasesTheLane() {
+        AtomicBoolean disposed = new AtomicBoolean();
+        Disposable running = sequencer.submit(A, () -> Mono.<String>never().doOnCancel(() -> disposed.set(true))).subscribe();
+
+        StepVerifier.create(sequencer.submit(A, () -> Mono.just("next")))
+                .then(running::dispose)
+                .expectNext("next")
+                .verifyComplete();
+        assertTrue(disposed.get());
+    }
+
+    private static Mono<String> started(List<String> started, String name, Mono<String> work) {
+        started.add(name);
+        return work;
+    }
+}
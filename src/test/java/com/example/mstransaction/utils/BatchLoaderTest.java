@@ -0,0 +1,133 @@
+package com.example.mstransaction.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class BatchLoaderTest {
+    private static final Duration WINDOW = Duration.ofMillis(5);
+    private SimpleMeterRegistry registry;
+    private List<List<String>> batches;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        batches = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    void keysOfTheWindowAreLoadedTogetherAndDuplicatesShareTheirKey() {
+        BatchLoader<String, List<String>> loader = loader(50);
+
+        StepVerifier.withVirtualTime(() -> Flux.merge(
+                                loader.execute("a", this::echo),
+                                loader.execute("b", this::echo),
+                                loader.execute("a", this::echo))
+                        .collectList())
+                .expectSubscription()
+                .expectNoEvent(WINDOW.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .assertNext(values -> {
+                    List<List<String>> sorted = sorted(values);
+                    assertEquals(Arrays.asList(list("a"), list("a"), list("b")), sorted);
+                    assertNotSame(sorted.get(0), sorted.get(1));
+                })
+                .verifyComplete();
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), batches);
+        assertEquals(1, registry.get("downstream.batch.deduplicated").counter().count());
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheWindow() {
+        BatchLoader<String, List<String>> loader = loader(2);
+
+        StepVerifier.withVirtualTime(() -> Flux.merge(
+                        loader.execute("a", this::echo),
+                        loader.execute("b", this::echo),
+                        loader.execute("c", this::echo)))
+                .expectNext(list("a"), list("b"))
+                .then(() -> assertEquals(Collections.singletonList(Arrays.asList("a", "b")), batches))
+                .expectNoEvent(WINDOW.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext(list("c"))
+                .verifyComplete();
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c")), batches);
+    }
+
+    @Test
+    void failedBatchFailsEveryCallerAndTheKeysCanBeAskedAgain() {
+        BatchLoader<String, List<String>> loader = loader(50);
+        Function<List<String>, Mono<Map<String, List<String>>>> failing = keys -> {
+            batches.add(keys);
+            return Mono.error(new IllegalStateException("batch failed"));
+        };
+
+        StepVerifier.withVirtualTime(() -> Flux.merge(
+                        errorOf(loader.execute("a", failing)),
+                        errorOf(loader.execute("b", failing)),
+                        errorOf(loader.execute("a", failing))))
+                .thenAwait(WINDOW)
+                .expectNext("batch failed", "batch failed", "batch failed")
+                .verifyComplete();
+        StepVerifier.withVirtualTime(() -> loader.execute("a", this::echo))
+                .thenAwait(WINDOW)
+                .expectNext(list("a"))
+                .verifyComplete();
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    void keyMissingFromTheBatchCompletesEmpty() {
+        BatchLoader<String, List<String>> loader = loader(50);
+        Function<List<String>, Mono<Map<String, List<String>>>> onlyA = keys -> echo(Collections.singletonList("a"));
+
+        StepVerifier.withVirtualTime(() -> Flux.merge(loader.execute("a", onlyA), loader.execute("b", onlyA)))
+                .thenAwait(WINDOW)
+                .expectNext(list("a"))
+                .verifyComplete();
+    }
+
+    private BatchLoader<String, List<String>> loader(int maxBatchSize) {
+        return new BatchLoader<>("test", WINDOW, maxBatchSize, ArrayList::new, registry);
+    }
+
+    /**
+     * Every key maps to a list holding the key.
+     */
+    private Mono<Map<String, List<String>>> echo(List<String> keys) {
+        batches.add(keys);
+        Map<String, List<String>> loaded = new LinkedHashMap<>();
+        keys.forEach(key -> loaded.put(key, list(key)));
+        return Mono.just(loaded);
+    }
+
+    private static Mono<String> errorOf(Mono<List<String>> lookup) {
+        return lookup.then(Mono.<String>empty()).onErrorResume(e -> Mono.just(e.getMessage()));
+    }
+
+    private static List<List<String>> sorted(List<List<String>> values) {
+        List<List<String>> sorted = new ArrayList<>(values);
+        sorted.sort((x, y) -> x.get(0).compareTo(y.get(0)));
+        return sorted;
+    }
+
+    private static List<String> list(String value) {
+        return new ArrayList<>(Collections.singletonList(value));
+    }
+}
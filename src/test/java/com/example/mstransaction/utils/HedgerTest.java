@@ -0,0 +1,105 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.config.DownstreamProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HedgerTest {
+    private static final Duration MIN_DELAY = Duration.ofMillis(20);
+    private static final Duration SLOW = Duration.ofMillis(100);
+    private SimpleMeterRegistry registry;
+    private DownstreamProperties.Client settings;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        settings = new DownstreamProperties.Client("http://test");
+        settings.setHedgeEnabled(true);
+        settings.setHedgeMinDelay(MIN_DELAY);
+    }
+
+    @Test
+    void slowFirstAttemptIsHedgedAfterTheDelay() {
+        Hedger hedger = new Hedger("test", settings, registry);
+
+        StepVerifier.withVirtualTime(() -> hedger.execute(slowThenFast()))
+                .expectSubscription()
+                .expectNoEvent(MIN_DELAY)
+                .expectNext("hedge")
+                .verifyComplete();
+        assertEquals(1, count("issued"));
+        assertEquals(1, count("won"));
+    }
+
+    @Test
+    void hedgesArePaidFromTheBudget() {
+        // a burst of one hedge, refilled by two lookups
+        settings.setHedgeBurst(1);
+        settings.setHedgeBudget(0.5);
+        Hedger hedger = new Hedger("test", settings, registry);
+
+        StepVerifier.withVirtualTime(() -> Flux.concat(
+                        hedger.execute(slowThenFast()),
+                        hedger.execute(slowThenFast()),
+                        hedger.execute(slowThenFast())))
+                .thenAwait(SLOW.multipliedBy(3))
+                .expectNext("hedge", "first", "hedge")
+                .verifyComplete();
+        assertEquals(2, count("issued"));
+        assertEquals(1, count("rejected"));
+    }
+
+    @Test
+    void failedHedgeDoesNotHideTheFirstAttempt() {
+        Hedger hedger = new Hedger("test", settings, registry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedger.execute(() -> attempts.getAndIncrement() == 0
+                        ? Mono.delay(SLOW).thenReturn("first")
+                        : Mono.error(new IllegalStateException("hedge failed"))))
+                .expectSubscription()
+                .expectNoEvent(SLOW)
+                .expectNext("first")
+                .verifyComplete();
+        assertEquals(1, count("issued"));
+        assertEquals(0, count("won"));
+    }
+
+    @Test
+    void disabledHedgerSendsOneAttempt() {
+        settings.setHedgeEnabled(false);
+        Hedger hedger = new Hedger("test", settings, registry);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedger.execute(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.delay(SLOW).thenReturn("first");
+                }))
+                .thenAwait(SLOW)
+                .expectNext("first")
+                .verifyComplete();
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * The first attempt of a lookup answers after {@link #SLOW}, the hedge at once.
+     */
+    private static Supplier<Mono<String>> slowThenFast() {
+        AtomicInteger attempts = new AtomicInteger();
+        return () -> attempts.getAndIncrement() == 0 ? Mono.delay(SLOW).thenReturn("first") : Mono.just("hedge");
+    }
+
+    private double count(String result) {
+        return registry.get("downstream.hedge").tag("result", result).counter().count();
+    }
+}
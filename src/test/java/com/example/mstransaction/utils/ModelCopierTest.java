@@ -0,0 +1,76 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.models.entities.Acquisition;
+import com.example.mstransaction.models.entities.Bill;
+import com.example.mstransaction.models.entities.Customer;
+import com.example.mstransaction.models.entities.Money;
+import com.example.mstransaction.models.entities.Product;
+import com.example.mstransaction.models.entities.Rules;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ModelCopierTest {
+    private final ModelCopier copier = new ModelCopier();
+
+    @Test
+    void copyIsEqualAndSharesNoMutableNode() {
+        Bill bill = bill();
+
+        Bill copy = copier.copy(bill);
+
+        assertEquals(bill, copy);
+        assertNotSame(bill.getAcquisition(), copy.getAcquisition());
+        assertNotSame(bill.getAcquisition().getProduct(), copy.getAcquisition().getProduct());
+        assertNotSame(bill.getAcquisition().getProduct().getRules(), copy.getAcquisition().getProduct().getRules());
+        assertNotSame(bill.getAcquisition().getCustomerHolder(), copy.getAcquisition().getCustomerHolder());
+        assertNotSame(bill.getAcquisition().getCustomerHolder().get(0), copy.getAcquisition().getCustomerHolder().get(0));
+        assertNotSame(bill.getAcquisition().getBill(), copy.getAcquisition().getBill());
+    }
+
+    @Test
+    void mutatingTheCopyLeavesTheOriginalAlone() {
+        Bill bill = bill();
+
+        Bill copy = copier.copy(bill);
+        copy.setBalance(Money.zero());
+        copy.getAcquisition().getProduct().getRules().setMaximumLimitMonthlyMovementsQuantity(1);
+        copy.getAcquisition().getCustomerHolder().clear();
+
+        assertEquals(bill(), bill);
+    }
+
+    @Test
+    void missingPartsStayMissing() {
+        assertNull(copier.copy((Bill) null));
+        assertEquals(new Acquisition(), copier.copy(new Acquisition()));
+    }
+
+    private static Bill bill() {
+        Rules rules = new Rules();
+        rules.setCustomerType("PERSONAL");
+        rules.setMaximumLimitMonthlyMovements(true);
+        rules.setMaximumLimitMonthlyMovementsQuantity(5);
+        Product product = new Product();
+        product.setProductName("AHORRO");
+        product.setProductType("PASIVO");
+        product.setRules(rules);
+        Customer holder = new Customer();
+        holder.setCustomerIdentityNumber("71234567");
+        Acquisition acquisition = new Acquisition();
+        acquisition.setProduct(product);
+        acquisition.setCustomerHolder(Collections.singletonList(holder));
+        acquisition.setIban("PE12345678901234567890");
+        acquisition.setBill(Bill.builder().accountNumber("1234567890").build());
+        return Bill.builder()
+                .id("60f1c7e2a4b5c6d7e8f90123")
+                .accountNumber("1234567890")
+                .balance(Money.ofMinor(150_000))
+                .acquisition(acquisition)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.models.entities.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyAccumulatorTest {
+
+    @Test
+    void keepsCountSumMinAndMax() {
+        MoneyAccumulator accumulator = new MoneyAccumulator()
+                .add(Money.ofMinor(300))
+                .add(Money.ofMinor(-50))
+                .add(Money.ofMinor(1250));
+
+        assertEquals(3, accumulator.getCount());
+        assertEquals(Money.ofMinor(1500), accumulator.sum());
+        assertEquals(Money.ofMinor(-50), accumulator.min());
+        assertEquals(Money.ofMinor(1250), accumulator.max());
+    }
+
+    @Test
+    void averageIsRoundedHalfEvenToTheMinorUnit() {
+        assertEquals(Money.ofMinor(2), average(1, 2));
+        assertEquals(Money.ofMinor(2), average(1, 4));
+        assertEquals(Money.ofMinor(4), average(3, 4));
+        assertEquals(Money.ofMinor(-2), average(-1, -2));
+        assertEquals(Money.ofMinor(33), average(0, 0, 100));
+    }
+
+    @Test
+    void emptyHasZeroSumAndAverageAndNoMinOrMax() {
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+
+        assertEquals(Money.zero(), accumulator.sum());
+        assertEquals(Money.zero(), accumulator.average());
+        assertNull(accumulator.min());
+        assertNull(accumulator.max());
+    }
+
+    @Test
+    void sumOverflowFails() {
+        MoneyAccumulator accumulator = new MoneyAccumulator().add(Money.ofMinor(Long.MAX_VALUE));
+
+        assertThrows(ArithmeticException.class, () -> accumulator.add(Money.ofMinor(1)));
+    }
+
+    @Test
+    void anotherCurrencyIsRejected() {
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+
+        assertThrows(IllegalArgumentException.class, () -> accumulator.add(Money.ofMinor(100, Currency.getInstance("USD"))));
+    }
+
+    private static Money average(long... minorUnits) {
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+        for (long amount : minorUnits) {
+            accumulator.add(Money.ofMinor(amount));
+        }
+        return accumulator.average();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mstransaction.utils;
+
+import com.example.mstransaction.config.TransactionProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RangeSplitterTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2021, 6, 1, 0, 0);
+    private SimpleMeterRegistry registry;
+    private TransactionProperties properties;
+    private RangeSplitter splitter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        properties = new TransactionProperties();
+        splitter = new RangeSplitter(properties, registry);
+    }
+
+    @Test
+    void rangeIsCutIntoContiguousSlicesOfTheSpan() {
+        assertEquals(Arrays.asList(FROM, FROM.plusDays(7), FROM.plusDays(14), FROM.plusDays(21)), bounds(FROM, FROM.plusDays(21)));
+    }
+
+    @Test
+    void partialSpanAddsASliceAndTheRangeIsSharedEvenly() {
+        LocalDateTime to = FROM.plusDays(15);
+
+        assertEquals(Arrays.asList(FROM, FROM.plusDays(5), FROM.plusDays(10), to), bounds(FROM, to));
+    }
+
+    @Test
+    void slicesAreCappedAndTheLastOneEndsAtTo() {
+        LocalDateTime to = FROM.plusDays(365).plusSeconds(1);
+
+        List<LocalDateTime> bounds = bounds(FROM, to);
+
+        assertEquals(properties.getSplit().getMaxSlices() + 1, bounds.size());
+        assertEquals(FROM, bounds.get(0));
+        assertEquals(to, bounds.get(bounds.size() - 1));
+    }
+
+    @Test
+    void rangeOfThousandsOfYearsIsCappedWithoutOverflowing() {
+        LocalDateTime from = LocalDateTime.of(1, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+        List<LocalDateTime> bounds = bounds(from, to);
+
+        assertEquals(properties.getSplit().getMaxSlices() + 1, bounds.size());
+        for (int i = 1; i < bounds.size(); i++) {
+            assertEquals(true, bounds.get(i - 1).isBefore(bounds.get(i)));
+        }
+        assertEquals(to, bounds.get(bounds.size() - 1));
+    }
+
+    @Test
+    void emptyOrInvertedRangeIsOneSlice() {
+        assertEquals(Arrays.asList(FROM, FROM), bounds(FROM, FROM));
+        assertEquals(Arrays.asList(FROM, FROM.minusDays(1)), bounds(FROM, FROM.minusDays(1)));
+    }
+
+    @Test
+    void orderedEmitsTheSlicesInRangeOrderWhateverFinishesFirst() {
+        StepVerifier.withVirtualTime(() -> splitter.ordered("test", FROM, FROM.plusDays(21), this::laterSlicesFirst))
+                .thenAwait(Duration.ofSeconds(3))
+                .expectNext(FROM, FROM.plusDays(7), FROM.plusDays(14))
+                .verifyComplete();
+    }
+
+    @Test
+    void unorderedEmitsTheSlicesAsTheyFinish() {
+        StepVerifier.withVirtualTime(() -> splitter.unordered("test", FROM, FROM.plusDays(21), this::laterSlicesFirst))
+                .thenAwait(Duration.ofSeconds(3))
+                .expectNext(FROM.plusDays(14), FROM.plusDays(7), FROM)
+                .verifyComplete();
+    }
+
+    @Test
+    void sliceCountIsRecorded() {
+        bounds(FROM, FROM.plusDays(21));
+
+        DistributionSummary slices = registry.get(RangeSplitter.SLICES_SUMMARY).tag("query", "test").summary();
+        assertEquals(1, slices.count());
+        assertEquals(3, slices.totalAmount());
+    }
+
+    private List<LocalDateTime> bounds(LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> bounds = new CopyOnWriteArrayList<>();
+        splitter.ordered("test", from, to, (start, end) -> {
+                    if (bounds.isEmpty()) {
+                        bounds.add(start);
+                    }
+                    assertEquals(bounds.get(bounds.size() - 1), start);
+                    bounds.add(end);
+                    return Flux.<LocalDateTime>empty();
+                })
+                .blockLast();
+        return bounds;
+    }
+
+    /**
+     * The slice that starts at {@code start} answers after a second less for every week from {@link #FROM}.
+     */
+    private Flux<LocalDateTime> laterSlicesFirst(LocalDateTime start, LocalDateTime end) {
+        long week = Duration.between(FROM, start).toDays() / 7;
+        return Flux.just(start).delayElements(Duration.ofSeconds(3 - week));
+    }
+}
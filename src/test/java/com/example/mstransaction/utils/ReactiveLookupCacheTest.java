@@ -0,0 +1,99 @@
+package com.example.mstransaction.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReactiveLookupCacheTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private ReactiveLookupCache<String, List<String>> cache;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    void setUp() {
+        cache = cache(100);
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    void everySubscriberGetsItsOwnCopyOfTheCachedValue() {
+        StepVerifier.create(cache.get("a", key -> load(Mono.just(list("a")))))
+                .consumeNextWith(value -> value.add("changed by the caller"))
+                .expectComplete()
+                .verify(TIMEOUT);
+        StepVerifier.create(cache.get("a", key -> load(Mono.just(list("b")))))
+                .expectNext(list("a"))
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void emptyAndFailedLookupsAreNotCached() {
+        StepVerifier.create(cache.get("a", key -> load(Mono.empty())))
+                .expectComplete()
+                .verify(TIMEOUT);
+        StepVerifier.create(cache.get("a", key -> load(Mono.error(new IllegalStateException("failed")))))
+                .expectErrorMessage("failed")
+                .verify(TIMEOUT);
+        StepVerifier.create(cache.get("a", key -> load(Mono.just(list("a")))))
+                .expectNext(list("a"))
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void cancellingOneSubscriberDoesNotCancelTheSharedLoad() {
+        Sinks.One<List<String>> response = Sinks.one();
+        Disposable cancelled = cache.get("a", key -> load(response.asMono())).subscribe();
+
+        StepVerifier.create(cache.get("a", key -> load(response.asMono())))
+                .then(() -> {
+                    cancelled.dispose();
+                    response.tryEmitValue(list("a"));
+                })
+                .expectNext(list("a"))
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void maximumSizeZeroAlwaysLoads() {
+        ReactiveLookupCache<String, List<String>> disabled = cache(0);
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(disabled.get("a", key -> load(Mono.just(list("a")))))
+                    .expectNext(list("a"))
+                    .expectComplete()
+                    .verify(TIMEOUT);
+        }
+        assertEquals(2, calls.get());
+    }
+
+    private Mono<List<String>> load(Mono<List<String>> response) {
+        calls.incrementAndGet();
+        return response;
+    }
+
+    private static ReactiveLookupCache<String, List<String>> cache(long maximumSize) {
+        return new ReactiveLookupCache<>("test", maximumSize, Duration.ofMinutes(1), ArrayList::new, new SimpleMeterRegistry());
+    }
+
+    private static List<String> list(String value) {
+        return new ArrayList<>(Collections.singletonList(value));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.mstransaction.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class SingleFlightTest {
+    private SimpleMeterRegistry registry;
+    private SingleFlight<String, List<String>> flight;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        flight = new SingleFlight<>("test", ArrayList::new, registry);
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    void concurrentLookupsShareOneCallAndGetTheirOwnCopy() {
+        Sinks.One<List<String>> response = Sinks.one();
+
+        StepVerifier.create(Flux.merge(flight.execute("a", key -> load(response.asMono())),
+                                flight.execute("a", key -> load(response.asMono())))
+                        .collectList())
+                .then(() -> response.tryEmitValue(Collections.singletonList("a")))
+                .assertNext(values -> {
+                    assertEquals(values.get(0), values.get(1));
+                    assertNotSame(values.get(0), values.get(1));
+                })
+                .verifyComplete();
+        assertEquals(1, calls.get());
+        assertEquals(1, registry.get("downstream.coalesced").tag("lookup", "test").counter().count());
+    }
+
+    @Test
+    void nothingIsServedAfterTheCallTerminated() {
+        StepVerifier.create(flight.execute("a", key -> load(Mono.just(Collections.singletonList("a")))))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(flight.execute("a", key -> load(Mono.error(new IllegalStateException("failed")))))
+                .verifyErrorMessage("failed");
+        StepVerifier.create(flight.execute("a", key -> load(Mono.just(Collections.singletonList("b")))))
+                .expectNext(Collections.singletonList("b"))
+                .verifyComplete();
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void errorReachesEveryCoalescedSubscriber() {
+        Sinks.One<List<String>> response = Sinks.one();
+
+        StepVerifier.create(Flux.merge(errorOf(flight.execute("a", key -> load(response.asMono()))),
+                        errorOf(flight.execute("a", key -> load(response.asMono())))))
+                .then(() -> response.tryEmitError(new IllegalStateException("failed")))
+                .expectNext("failed", "failed")
+                .verifyComplete();
+        assertEquals(1, calls.get());
+    }
+
+    private static Mono<String> errorOf(Mono<List<String>> lookup) {
+        return lookup.then(Mono.<String>empty()).onErrorResume(e -> Mono.just(e.getMessage()));
+    }
+
+    private Mono<List<String>> load(Mono<List<String>> response) {
+        calls.incrementAndGet();
+        return response;
+    }
+}